@@ -2,17 +2,29 @@
 package hu.bme.mit.ftsrg.chaincode.tpcc.api;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.jcabi.aspects.Loggable;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import hu.bme.mit.ftsrg.chaincode.tpcc.data.entity.*;
 import hu.bme.mit.ftsrg.chaincode.tpcc.data.extra.*;
 import hu.bme.mit.ftsrg.chaincode.tpcc.data.input.*;
 import hu.bme.mit.ftsrg.chaincode.tpcc.data.output.*;
+import hu.bme.mit.ftsrg.chaincode.tpcc.generator.ScaleParameters;
+import hu.bme.mit.ftsrg.chaincode.tpcc.generator.Table;
+import hu.bme.mit.ftsrg.chaincode.tpcc.generator.TableEntryGenerator;
+import hu.bme.mit.ftsrg.chaincode.tpcc.index.CustomerLastNameIndex;
+import hu.bme.mit.ftsrg.chaincode.tpcc.index.CustomerLastOrderIndex;
+import hu.bme.mit.ftsrg.chaincode.tpcc.index.DeliveryQueue;
+import hu.bme.mit.ftsrg.chaincode.tpcc.index.NewOrderQueue;
+import hu.bme.mit.ftsrg.chaincode.tpcc.index.OrderIdAllocator;
+import hu.bme.mit.ftsrg.chaincode.tpcc.index.YtdDeltaLog;
 import hu.bme.mit.ftsrg.chaincode.tpcc.middleware.TPCCContext;
+import hu.bme.mit.ftsrg.chaincode.tpcc.util.JSON;
 import hu.bme.mit.ftsrg.hypernate.Registry;
 import hu.bme.mit.ftsrg.hypernate.context.ContextWithRegistry;
+import hu.bme.mit.ftsrg.hypernate.entity.Entity;
 import hu.bme.mit.ftsrg.hypernate.entity.EntityExistsException;
 import hu.bme.mit.ftsrg.hypernate.entity.EntityNotFoundException;
 import hu.bme.mit.ftsrg.hypernate.entity.SerializationException;
+import java.time.Instant;
 import java.util.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -21,22 +33,35 @@ import org.slf4j.LoggerFactory;
  * The implementation of the TPC-C benchmark smart contract according to the specification version
  * v5.11.0.
  */
-@Loggable(Loggable.DEBUG)
 class TPCCBusinessAPI {
 
   private final Logger logger = LoggerFactory.getLogger(TPCCBusinessAPI.class);
 
   private static final int DISTRICT_COUNT = 10;
 
+  /* Stock-Level only needs these fields of the (many) entities it reads */
+  private static final EntityProjection<Order> ORDER_LINE_COUNT =
+      EntityProjection.of(Order.class, "o_ol_cnt");
+  private static final EntityProjection<OrderLine> ORDER_LINE_ITEM_ID =
+      EntityProjection.of(OrderLine.class, "ol_i_id");
+  private static final EntityProjection<Stock> STOCK_QUANTITY =
+      EntityProjection.of(Stock.class, "s_quantity");
+
   /**
    * Performs the Delivery read-write TX profile [TPC-C 2.7].
    *
+   * <p>In deferred mode (see {@link DeliveryQueue}), only queues the delivery of each district, to
+   * be executed by {@link #deliver(TPCCContext, DeliverInput)}.
+   *
    * @param ctx The TX context.
    * @param input The input parameters
    * @return The transaction output
    */
   DeliveryOutput delivery(final TPCCContext ctx, final DeliveryInput input)
       throws EntityNotFoundException, SerializationException, JsonProcessingException {
+    if (DeliveryQueue.ENABLED) {
+      return queueDelivery(ctx, input);
+    }
 
     /*
      * [TPC-C 2.7.4.2]
@@ -90,6 +115,79 @@ class TPCCBusinessAPI {
     return output;
   }
 
+  /**
+   * Executes the oldest deferred Delivery of a district [TPC-C 2.7.2].
+   *
+   * <p>Delivers the oldest undelivered order of the district as Delivery would [TPC-C 2.7.4.2], and
+   * records the result under the ID of the queuing Delivery transaction, to be read with {@link
+   * #deliveryResult(TPCCContext, int, String)}. The read/write set is that of a single district, so
+   * the transactions of different districts do not conflict with each other.
+   *
+   * @param ctx The TX context.
+   * @param input The input parameters
+   * @return The result of the district's delivery, or an empty output if no delivery is queued for
+   *     the district
+   */
+  DeliveryOutput deliver(final TPCCContext ctx, final DeliverInput input)
+      throws EntityNotFoundException, SerializationException, JsonProcessingException {
+    final DeliveryQueue.Job job =
+        DeliveryQueue.pollOldest(ctx.getStub(), input.getW_id(), input.getD_id());
+    if (job == null) {
+      logger.debug("No delivery queued for District({}, {})", input.getW_id(), input.getD_id());
+      ctx.commit();
+      return DeliveryOutput.builder().w_id(input.getW_id()).delivered(List.of()).build();
+    }
+
+    final DeliveredOrder deliveredOrder =
+        deliverOldestNewOrderForDistrict(
+            ctx,
+            input.getW_id(),
+            input.getD_id(),
+            job.getInput().getO_carrier_id(),
+            job.getInput().getOl_delivery_d());
+    final DeliveryOutput output =
+        DeliveryOutput.builder()
+            .w_id(input.getW_id())
+            .o_carrier_id(job.getInput().getO_carrier_id())
+            .delivered(deliveredOrder == null ? List.of() : List.of(deliveredOrder))
+            .skipped(deliveredOrder == null ? 1 : 0)
+            .job_id(job.getId())
+            .build();
+    DeliveryQueue.recordResult(ctx.getStub(), job, input.getD_id(), output);
+    ctx.commit();
+    return output;
+  }
+
+  /**
+   * Reads the results of a deferred Delivery recorded so far [TPC-C 2.7.2.2].
+   *
+   * @param ctx The TX context.
+   * @param w_id The W_ID of the Delivery
+   * @param job_id The ID of the Delivery transaction
+   * @return The delivered orders and the number of skipped and not yet executed districts
+   */
+  DeliveryOutput deliveryResult(final TPCCContext ctx, final int w_id, final String job_id)
+      throws JsonProcessingException {
+    final List<DeliveryOutput> results = DeliveryQueue.resultsOf(ctx.getStub(), w_id, job_id);
+
+    final List<DeliveredOrder> deliveredOrders = new ArrayList<>();
+    int skipped = 0;
+    for (final DeliveryOutput result : results) {
+      deliveredOrders.addAll(result.getDelivered());
+      skipped += result.getSkipped();
+    }
+
+    ctx.commit();
+    return DeliveryOutput.builder()
+        .w_id(w_id)
+        .o_carrier_id(results.isEmpty() ? 0 : results.get(0).getO_carrier_id())
+        .delivered(deliveredOrders)
+        .skipped(skipped)
+        .job_id(job_id)
+        .pending(DISTRICT_COUNT - results.size())
+        .build();
+  }
+
   /**
    * Performs the New-Order read-write TX profile [TPC-C 2.4].
    *
@@ -109,6 +207,32 @@ class TPCCBusinessAPI {
      */
 
     final Registry registry = ctx.getRegistry();
+    final int[] i_ids = input.getI_ids();
+    final int[] i_w_ids = input.getI_w_ids();
+    final int[] i_qtys = input.getI_qtys();
+
+    /*
+     * The transaction is executed in two phases: the first one only
+     * reads, and resolves every item of the order; the second one
+     * writes.  An unused item number (see Clause 2.4.2.3) is thus
+     * detected before anything is written, so the rollback costs only
+     * the reads of the first phase, and no write is made just to be
+     * discarded.  Reading the items ahead of the order number
+     * allocation does not change the outcome, as none of the writes
+     * below touch the ITEM table.
+     *
+     * Every row read in the first phase is known from the input, so
+     * fetch them all up front instead of one round trip at a time.
+     */
+    final List<Entity> toPrefetch = new ArrayList<>();
+    toPrefetch.add(Warehouse.builder().id(input.getW_id()).build());
+    toPrefetch.add(District.builder().w_id(input.getW_id()).id(input.getD_id()).build());
+    toPrefetch.add(
+        Customer.builder().w_id(input.getW_id()).d_id(input.getD_id()).id(input.getC_id()).build());
+    for (final int i_id : i_ids) {
+      toPrefetch.add(Item.builder().id(i_id).build());
+    }
+    ctx.prefetch(toPrefetch);
 
     /*
      * [TPC-C 2.4.2.2 (3)]
@@ -126,18 +250,6 @@ class TPCCBusinessAPI {
     final District district =
         District.builder().w_id(warehouse.getW_id()).id(input.getD_id()).build();
     registry.read(district);
-    /*
-     * [TPC-C 2.4.2.2 (4) (continued)]
-     * ... and D_NEXT_O_ID, the next available order number for the
-     * district, is retrieved and incremented by one.
-     */
-    final int nextOrderId = district.getD_next_o_id();
-    district.incrementNextOrderID();
-    registry.update(district);
-    logger.debug(
-        "Next available order number for DISTRICT with D_ID={} incremented; new DISTRICT: {}",
-        district.getD_id(),
-        district);
 
     /*
      * [TPC-C 2.4.2.2 (5)]
@@ -154,6 +266,60 @@ class TPCCBusinessAPI {
             .build();
     registry.read(customer);
 
+    /*
+     * [TPC-C 2.4.2.2 (8.1)]
+     * The row in the ITEM table with matching I_ID (equals OL_I_ID)
+     * is selected and I_PRICE, the price of the item, I_NAME, the
+     * name of the item, and I_DATA are retrieved.  If I_ID has an
+     * unused value (see Clause 2.4.1.5), a "not-found" condition is
+     * signaled, resulting in a rollback of the database transaction
+     * (see Clause 2.4.2.3).
+     */
+    final Item[] items = new Item[i_ids.length];
+    for (int i = 0; i < i_ids.length; ++i) {
+      items[i] = Item.builder().id(i_ids[i]).build();
+      try {
+        registry.read(items[i]);
+      } catch (EntityNotFoundException e) {
+        /*
+         * [TPC-C 2.4.2.3]
+         * For transactions that rollback as a result of an unused item
+         * number, the complete transaction profile must be executed
+         * with the exception that the follow ing steps need not be
+         * done:
+         * - Selecting and retrieving the row in the STOCK table with
+         *   S_I_ID matching the unused item number.
+         * - Examining the strings I_DATA and S_DATA for the unused
+         *   item.
+         * - Inserting a new row into the ORDER-LINE table for the
+         *   unused item.
+         * - Adding the amount for the unused item to the sum of all
+         *   OL_AMOUNT.
+         */
+        return rollBackNewOrder(ctx, input, warehouse, district, customer, i_ids[i]);
+      }
+    }
+
+    /*
+     * [TPC-C 2.4.2.2 (4) (continued)]
+     * ... and D_NEXT_O_ID, the next available order number for the
+     * district, is retrieved and incremented by one.
+     */
+    final int nextOrderId;
+    if (OrderIdAllocator.SHARDED) {
+      nextOrderId = OrderIdAllocator.allocate(ctx.getStub(), district);
+      logger.debug(
+          "Allocated order number {} for DISTRICT with D_ID={}", nextOrderId, district.getD_id());
+    } else {
+      nextOrderId = district.getD_next_o_id();
+      district.incrementNextOrderID();
+      registry.update(district);
+      logger.debug(
+          "Next available order number for DISTRICT with D_ID={} incremented; new DISTRICT: {}",
+          district.getD_id(),
+          district);
+    }
+
     /*
      * [TPC-C 2.4.2.2 (6)]
      * A new row is inserted into both the NEW-ORDER table and the
@@ -165,7 +331,9 @@ class TPCCBusinessAPI {
             .d_id(district.getD_id())
             .w_id(warehouse.getW_id())
             .build();
-    registry.create(newOrder);
+    /* The order number was just allocated, so none of the order's rows can exist yet */
+    ctx.insert(newOrder);
+    NewOrderQueue.enqueue(ctx.getStub(), newOrder, ctx.getStub().getTxTimestamp());
     /*
      * [TPC-C 2.4.2.2 (6) (continued)]
      * ... O_CARRIER_ID is set to a null value.  If the order includes
@@ -184,74 +352,28 @@ class TPCCBusinessAPI {
             .c_id(customer.getC_id())
             .entry_d(input.getO_entry_d())
             .carrier_id(0)
-            .ol_cnt(input.getI_ids().length)
-            .all_local(allMatch(input.getI_w_ids(), warehouse.getW_id()) ? 1 : 0)
+            .ol_cnt(i_ids.length)
+            .all_local(allMatch(i_w_ids, warehouse.getW_id()) ? 1 : 0)
             .build();
-    registry.create(order);
+    ctx.insert(order);
+    CustomerLastOrderIndex.set(ctx.getStub(), order);
 
     /*
      * [TPC-C 2.4.2.2 (8)]
      * For each O_OL_CNT item on the order: ...
      */
+    final List<Entity> stocks = new ArrayList<>();
+    for (int i = 0; i < i_ids.length; ++i) {
+      stocks.add(Stock.builder().w_id(i_w_ids[i]).i_id(i_ids[i]).build());
+    }
+    ctx.prefetch(stocks);
     final List<ItemsData> itemsDataList = new ArrayList<>();
     double totalOrderLineAmount = 0;
-    final int[] i_ids = input.getI_ids();
-    final int[] i_w_ids = input.getI_w_ids();
-    final int[] i_qtys = input.getI_qtys();
-    for (int i = 0; i < input.getI_ids().length; ++i) {
-      /*
-       * [TPC-C 2.4.2.2 (8.1)]
-       * The row in the ITEM table with matching I_ID (equals OL_I_ID)
-       * is selected and I_PRICE, the price of the item, I_NAME, the
-       * name of the item, and I_DATA are retrieved.  If I_ID has an
-       * unused value (see Clause 2.4.1.5), a "not-found" condition is
-       * signaled, resulting in a rollback of the database transaction
-       * (see Clause 2.4.2.3).
-       */
-      final Item item = Item.builder().id(i_ids[i]).build();
-      try {
-        registry.read(item);
-      } catch (EntityNotFoundException e) {
-        /*
-         * [TPC-C 2.4.2.3]
-         * For transactions that rollback as a result of an unused item
-         * number, the complete transaction profile must be executed
-         * with the exception that the follow ing steps need not be
-         * done:
-         * - Selecting and retrieving the row in the STOCK table with
-         *   S_I_ID matching the unused item number.
-         * - Examining the strings I_DATA and S_DATA for the unused
-         *   item.
-         * - Inserting a new row into the ORDER-LINE table for the
-         *   unused item.
-         * - Adding the amount for the unused item to the sum of all
-         *   OL_AMOUNT.
-         */
-        /*
-         * [TPC-C 2.4.3.4]
-         * For transactions that are rolled back as a result of an
-         * unused item number (1% of all New-Order transactions), the
-         * emulated terminal must display in the appropriate fields of
-         * the input/output screen the fields: W_ID, D_ID, C_ID, C_LAST,
-         * C_CREDIT, O_ID, and the execution status message
-         * "Item number is not valid".  Note that no execution status
-         * message is required for successfully committed transactions.
-         * However, this field may not display
-         * "Item number is not valid" if the transaction is successful.
-         */
-        return NewOrderOutput.builder()
-            .fromWarehouse(warehouse)
-            .fromDistrict(district)
-            .fromCustomer(customer)
-            .fromOrder(order)
-            .message("Item number is not valid")
-            .build();
-      }
-
+    for (int i = 0; i < i_ids.length; ++i) {
       totalOrderLineAmount +=
           createOrderLineAndGetAmount(
               ctx,
-              item,
+              items[i],
               i_ids[i],
               i_w_ids[i],
               i_qtys[i],
@@ -416,8 +538,12 @@ class TPCCBusinessAPI {
      * ... and W_YTD, the warehouse's year-to-date balance, is
      * increased by H_AMOUNT.
      */
-    warehouse.increaseYTD(input.getH_amount());
-    registry.update(warehouse);
+    if (YtdDeltaLog.ENABLED) {
+      YtdDeltaLog.record(ctx.getStub(), warehouse, input.getH_amount());
+    } else {
+      warehouse.increaseYTD(input.getH_amount());
+      registry.update(warehouse);
+    }
 
     /*
      * [TPC-C 2.5.2.2 (4)]
@@ -433,8 +559,12 @@ class TPCCBusinessAPI {
      * ... and D_YTD, the district's year-to-date balance, is
      * increased by H_AMOUNT.
      */
-    district.increaseYTD(input.getH_amount());
-    registry.update(district);
+    if (YtdDeltaLog.ENABLED) {
+      YtdDeltaLog.record(ctx.getStub(), district, input.getH_amount());
+    } else {
+      district.increaseYTD(input.getH_amount());
+      registry.update(district);
+    }
 
     /*
      * [TPC-C 2.5.2.2 (5.1)]
@@ -522,16 +652,21 @@ class TPCCBusinessAPI {
      * C_ID, H_C_D_ID = C_D_ID, H_C_W_ID = C_W_ID, H_D_ID = D_ID, and
      * H_W_ID = W_ID.
      */
+    /*
+     * HISTORY rows are keyed by the customer and the payment's
+     * transaction, so they are unique and can be written blindly.
+     */
     final History history =
         History.builder()
             .fromCustomer(customer)
+            .fromTransaction(ctx.getStub().getTxId(), ctx.getStub().getTxTimestamp())
             .d_id(district.getD_id())
             .w_id(warehouse.getW_id())
             .date(input.getH_date())
             .amount(input.getH_amount())
             .data(h_data)
             .build();
-    registry.create(history);
+    ctx.insert(history);
 
     /*
      * [TPC-C 2.5.3.3]
@@ -591,12 +726,21 @@ class TPCCBusinessAPI {
      * are selected. They are the items for 5 recent orders of the
      * district.
      */
-    final int o_id_min = Math.max(district.getD_next_o_id() - 5, 0);
-    final int o_id_max = district.getD_next_o_id();
-    logger.debug("O_ID_MIN={}, O_ID_MAX={}", o_id_min, o_id_max);
-    logger.debug("Getting the most recent 5 orders");
+    final List<Integer> recentOrderIds;
+    if (OrderIdAllocator.SHARDED) {
+      recentOrderIds = OrderIdAllocator.recentOrderIds(ctx.getStub(), district, 5);
+    } else {
+      final int o_id_min = Math.max(district.getD_next_o_id() - 5, 0);
+      final int o_id_max = district.getD_next_o_id();
+      logger.debug("O_ID_MIN={}, O_ID_MAX={}", o_id_min, o_id_max);
+      recentOrderIds = new ArrayList<>();
+      for (int o_id = o_id_min; o_id < o_id_max; ++o_id) {
+        recentOrderIds.add(o_id);
+      }
+    }
+    logger.debug("Getting the most recent 5 orders: {}", recentOrderIds);
     final List<Integer> recentItemIds =
-        getItemIdsOfRecentOrders(ctx, input.getW_id(), district.getD_id(), o_id_min, o_id_max);
+        getItemIdsOfRecentOrders(ctx, input.getW_id(), district.getD_id(), recentOrderIds);
 
     /*
      * [TPC-C 2.8.2.2 (5)]
@@ -608,8 +752,8 @@ class TPCCBusinessAPI {
     int lowStock = 0;
     for (final int i_id : recentItemIds) {
       final Stock stock = Stock.builder().w_id(input.getW_id()).i_id(i_id).build();
-      ctx.getRegistry().read(stock);
-      if (stock.getS_quantity() < input.getThreshold()) {
+      final int s_quantity = STOCK_QUANTITY.read(ctx.getStub(), stock).getInt("s_quantity");
+      if (s_quantity < input.getThreshold()) {
         logger.debug("The stock quantity is less than the threshold");
         ++lowStock;
       }
@@ -630,6 +774,132 @@ class TPCCBusinessAPI {
     return output;
   }
 
+  /**
+   * Folds the pending W_YTD and D_YTD increments of a warehouse and its districts into the
+   * entities (see {@link YtdDeltaLog}).
+   *
+   * <p>The range reads of the increments are re-validated at commit, so this transaction fails if a
+   * Payment of the warehouse commits concurrently; it is meant to be retried in quiet periods.
+   *
+   * @param ctx The transaction context
+   * @param w_id The W_ID of the warehouse
+   * @return The warehouse with the increments applied
+   */
+  Warehouse compactYtd(final TPCCContext ctx, final int w_id)
+      throws EntityNotFoundException, SerializationException {
+    final Registry registry = ctx.getRegistry();
+
+    final Warehouse warehouse = Warehouse.builder().id(w_id).build();
+    registry.read(warehouse);
+    final double warehouseIncrement = YtdDeltaLog.compact(ctx.getStub(), warehouse);
+    if (warehouseIncrement != 0) {
+      warehouse.increaseYTD(warehouseIncrement);
+      registry.update(warehouse);
+    }
+
+    for (int d_id = 1; d_id <= DISTRICT_COUNT; ++d_id) {
+      final District district = District.builder().w_id(w_id).id(d_id).build();
+      registry.read(district);
+      final double districtIncrement = YtdDeltaLog.compact(ctx.getStub(), district);
+      if (districtIncrement != 0) {
+        district.increaseYTD(districtIncrement);
+        registry.update(district);
+      }
+    }
+
+    ctx.commit();
+    return warehouse;
+  }
+
+  /**
+   * Loads a batch of generated table rows [TPC-C 4.3.3.1].
+   *
+   * <p>The rows are written blindly (see {@link TPCCContext#insert(Entity)}), so loading does not
+   * read the ledger at all, and the writes are buffered by the write-back layer until the end of
+   * the batch. The indexes of CUSTOMER, ORDERS and NEW-ORDER are maintained as the rows are
+   * written. HISTORY rows get their transaction key parts from the loading transaction, suffixed
+   * with the position of the row in the batch.
+   *
+   * <p>The time taken is logged, but not returned: the response must be the same on every
+   * endorsing peer.
+   *
+   * @param ctx The transaction context
+   * @param input The rows to load
+   * @return The number of rows loaded, keyed by table name
+   * @throws IllegalArgumentException if a row belongs to an unknown table
+   */
+  Map<String, Integer> createEntries(final TPCCContext ctx, final CreateEntriesInput input)
+      throws SerializationException, JsonProcessingException {
+    final long start = System.nanoTime();
+    final Map<String, Integer> loaded = new TreeMap<>();
+    final List<CreateEntriesInput.Entry> entries = input.getEntries();
+    for (int i = 0; i < entries.size(); ++i) {
+      final Table table = Table.valueOf(entries.get(i).getTable());
+      final ObjectNode data = entries.get(i).getData();
+      if (table == Table.HISTORY) {
+        final History txKeyParts =
+            History.builder()
+                .fromTransaction(ctx.getStub().getTxId() + "-" + i, ctx.getStub().getTxTimestamp())
+                .build();
+        data.put("h_tx_ts", txKeyParts.getH_tx_ts());
+        data.put("h_tx_id", txKeyParts.getH_tx_id());
+      }
+      loadRow(ctx, table, JSON.convert(data, table.getEntityClass()), loaded);
+    }
+
+    ctx.commit();
+    logger.info(
+        "Loaded {} entries {} in {}ms",
+        entries.size(),
+        loaded,
+        (System.nanoTime() - start) / 1_000_000);
+    return loaded;
+  }
+
+  /**
+   * Generates and loads a chunk of the initial population from a seed [TPC-C 4.3.3.1].
+   *
+   * <p>The rows are generated by the chaincode itself (see {@link TableEntryGenerator}), so the
+   * proposal only carries the coordinates of the chunk instead of the rows, and are written as by
+   * {@link #createEntries(TPCCContext, CreateEntriesInput)}. Every endorsing peer generates the
+   * same rows from the same seed.
+   *
+   * @param ctx The transaction context
+   * @param input The seed and scale of the population, and the chunk to generate
+   * @return The number of rows loaded, keyed by table name
+   * @throws IllegalArgumentException if the chunk is not part of the population
+   */
+  Map<String, Integer> generateEntries(final TPCCContext ctx, final GenerateEntriesInput input)
+      throws SerializationException {
+    final long start = System.nanoTime();
+    final TableEntryGenerator generator =
+        new TableEntryGenerator(
+            ScaleParameters.makeWithScaleFactor(input.getWarehouses(), input.getScale_factor()),
+            input.getSeed(),
+            ctx.getStub().getTxTimestamp(),
+            ctx.getStub().getTxId());
+    final Map<String, Integer> loaded = new TreeMap<>();
+    generator.generate(
+        Table.valueOf(input.getTable()),
+        input.getW_id(),
+        input.getD_id(),
+        input.getFirst(),
+        input.getCount(),
+        (table, row) -> loadRow(ctx, table, row, loaded));
+
+    ctx.commit();
+    logger.info(
+        "Generated {} chunk (w_id={}, d_id={}, first={}, count={}) {} in {}ms",
+        input.getTable(),
+        input.getW_id(),
+        input.getD_id(),
+        input.getFirst(),
+        input.getCount(),
+        loaded,
+        (System.nanoTime() - start) / 1_000_000);
+    return loaded;
+  }
+
   /**
    * Creates some dummy initial entities for testing.
    *
@@ -645,6 +915,33 @@ class TPCCBusinessAPI {
     ctx.commit();
   }
 
+  /**
+   * Write a row of the initial population blindly, along with its index entries.
+   *
+   * @param ctx The transaction context
+   * @param table The table of the row
+   * @param row The row to write
+   * @param loaded The number of rows written so far, keyed by table name; updated
+   * @throws SerializationException if the row cannot be serialized
+   */
+  private static void loadRow(
+      final TPCCContext ctx,
+      final Table table,
+      final TPCCEntity row,
+      final Map<String, Integer> loaded)
+      throws SerializationException {
+    ctx.insert(row);
+    if (row instanceof Customer customer) {
+      CustomerLastNameIndex.add(ctx.getStub(), customer);
+    } else if (row instanceof Order order) {
+      /* The initial population has a single order per customer, so it is the latest one */
+      CustomerLastOrderIndex.set(ctx.getStub(), order);
+    } else if (row instanceof NewOrder newOrder) {
+      NewOrderQueue.enqueue(ctx.getStub(), newOrder, Instant.EPOCH);
+    }
+    loaded.merge(table.name(), 1, Integer::sum);
+  }
+
   /**
    * Check whether all elements in <code>arr</code> are equal to the passed <code>value</code>.
    *
@@ -686,7 +983,6 @@ class TPCCBusinessAPI {
    * @param ctx The transaction context
    * @throws EntityExistsException if a warehouse entry already exists on the ledger
    */
-  @Loggable(Loggable.DEBUG)
   private void initWarehouses(final ContextWithRegistry ctx)
       throws EntityExistsException, SerializationException {
     final Warehouse warehouse =
@@ -714,7 +1010,6 @@ class TPCCBusinessAPI {
    * @param ctx The transaction context
    * @throws EntityExistsException if a district entry already exists on the ledger
    */
-  @Loggable(Loggable.DEBUG)
   private void initDistricts(final ContextWithRegistry ctx)
       throws EntityExistsException, SerializationException {
     final District district =
@@ -744,7 +1039,6 @@ class TPCCBusinessAPI {
    * @param ctx The transaction context
    * @throws EntityExistsException if a customer entry already exists on the ledger
    */
-  @Loggable(Loggable.DEBUG)
   private void initCustomers(final ContextWithRegistry ctx)
       throws EntityExistsException, SerializationException {
     final Customer alice =
@@ -799,6 +1093,9 @@ class TPCCBusinessAPI {
     final Registry registry = ctx.getRegistry();
     registry.create(alice);
     registry.create(peter);
+
+    CustomerLastNameIndex.add(ctx.getStub(), alice);
+    CustomerLastNameIndex.add(ctx.getStub(), peter);
   }
 
   /**
@@ -810,7 +1107,6 @@ class TPCCBusinessAPI {
    * @param ctx The transaction context
    * @throws EntityExistsException if an item entry already exists on the ledger
    */
-  @Loggable(Loggable.DEBUG)
   private void initItems(final ContextWithRegistry ctx)
       throws EntityExistsException, SerializationException {
     final Item cup =
@@ -835,7 +1131,6 @@ class TPCCBusinessAPI {
    * @param ctx The transaction context
    * @throws EntityExistsException if a stock entry already exists on the ledger
    */
-  @Loggable(Loggable.DEBUG)
   private void initStocks(final ContextWithRegistry ctx)
       throws EntityExistsException, SerializationException {
     final Stock stock1 =
@@ -885,7 +1180,7 @@ class TPCCBusinessAPI {
    * Generate history information as per [TPC-C 2.5.2.2 (6)].
    *
    * <p><b>NOTE:</b> this code has been factored out of {@link TPCCContractAPI#payment(TPCCContext,
-   * String)} only so that OpenJML won't choke on the exceedingly long method.
+   * byte[])} only so that OpenJML won't choke on the exceedingly long method.
    *
    * @param customer The relevant customer entity
    * @param warehouse The relevant warehouse entity
@@ -893,7 +1188,6 @@ class TPCCBusinessAPI {
    * @param h_amount The relevant <code>H_AMOUNT</code> value
    * @return A history information string from the parameters
    */
-  @Loggable(Loggable.DEBUG)
   private static String generateHistoryInformation(
       final Customer customer,
       final Warehouse warehouse,
@@ -913,7 +1207,7 @@ class TPCCBusinessAPI {
    * Builds an {@link OrderLineData} instance from an {@link Order} an order <code>number</code>.
    *
    * <p><b>NOTE:</b> this code has been factored out of {@link
-   * TPCCContractAPI#orderStatus(TPCCContext, String)} only so that OpenJML won't choke on the
+   * TPCCContractAPI#orderStatus(TPCCContext, byte[])} only so that OpenJML won't choke on the
    * exceedingly long method.
    *
    * @param ctx The transaction context
@@ -921,7 +1215,6 @@ class TPCCBusinessAPI {
    * @param number The order number
    * @return The {@link OrderLineData} built
    */
-  @Loggable(Loggable.DEBUG)
   private OrderLineData getOrderLineDataForOrder(
       final ContextWithRegistry ctx, final Order order, final int number)
       throws EntityNotFoundException, SerializationException, JsonProcessingException {
@@ -931,11 +1224,40 @@ class TPCCBusinessAPI {
     return OrderLineData.builder().fromOrderLine(orderLine).build();
   }
 
+  /**
+   * Queues the delivery of each district of a warehouse [TPC-C 2.7.2.1].
+   *
+   * <p>Only the districts' queue tail pointers are read, so this transaction conflicts with a
+   * concurrent Delivery of the same warehouse, but not with the transactions executing the jobs
+   * (see {@link DeliveryQueue}).
+   *
+   * @param ctx The transaction context
+   * @param input The input parameters of the Delivery
+   * @return The output of the Delivery, with every district pending
+   */
+  private DeliveryOutput queueDelivery(final TPCCContext ctx, final DeliveryInput input)
+      throws JsonProcessingException {
+    for (int d_id = 1; d_id <= DISTRICT_COUNT; ++d_id) {
+      DeliveryQueue.enqueue(ctx.getStub(), input, d_id);
+    }
+
+    final DeliveryOutput output =
+        DeliveryOutput.builder()
+            .w_id(input.getW_id())
+            .o_carrier_id(input.getO_carrier_id())
+            .delivered(List.of())
+            .job_id(ctx.getStub().getTxId())
+            .pending(DISTRICT_COUNT)
+            .build();
+    ctx.commit();
+    return output;
+  }
+
   /**
    * Retrieves the oldest NEW-ORDER entry for a given warehouse and district.
    *
    * <p><b>NOTE:</b> this code has been factored out of {@link TPCCContractAPI#delivery(TPCCContext,
-   * String)} only so that OpenJML won't choke on the exceedingly long method.
+   * byte[])} only so that OpenJML won't choke on the exceedingly long method.
    *
    * @param ctx The transaction context
    * @param w_id The warehouse's ID
@@ -944,7 +1266,6 @@ class TPCCBusinessAPI {
    * @param ol_delivery_d The delivery date
    * @return The oldest NEW-ORDER entry with matching parameters
    */
-  @Loggable(Loggable.DEBUG)
   private DeliveredOrder deliverOldestNewOrderForDistrict(
       final ContextWithRegistry ctx,
       final int w_id,
@@ -961,29 +1282,12 @@ class TPCCBusinessAPI {
      * value is selected.  This is the oldest undelivered order of
      * that district.  NO_O_ID, the order number, is retrieved. [...]
      */
-    final List<NewOrder> matchingNewOrders =
-        registry
-            .select(new NewOrder())
-            /* TODO this code causes a StackOverflowError for some reason
-            .matching(
-                new Registry.Matcher<NewOrder>() {
-                  @Override
-                  public boolean match(NewOrder entity) {
-                    return entity.getNo_w_id() == w_id && entity.getNo_d_id() == d_id;
-                  }
-                })
-            */
-            .sortedBy(new NewOrderComparator())
-            .get();
-    /* Manually remove non-matching NewOrders, see above... */
-    final Iterator<NewOrder> it = matchingNewOrders.iterator();
-    while (it.hasNext()) {
-      final NewOrder no = it.next();
-      if (no.getNo_w_id() != w_id || no.getNo_d_id() != d_id) {
-        it.remove();
-      }
-    }
-    logger.debug("matchingNewOrders={}", matchingNewOrders);
+    /*
+     * Removes the queue entry as well.  With sharded order numbers,
+     * the oldest order is the earliest allocated one, which need not
+     * have the lowest NO_O_ID (see NewOrderQueue).
+     */
+    final Integer oldestOrderId = NewOrderQueue.pollOldest(ctx.getStub(), w_id, d_id);
 
     /*
      * [TPC-C 2.7.4.2 (3) (continued)]
@@ -996,11 +1300,11 @@ class TPCCBusinessAPI {
      * in more than 1%, or in more than one, whichever is greater, of
      * the business transactions, it must be reported. [...]
      */
-    if (matchingNewOrders.isEmpty()) {
+    if (oldestOrderId == null) {
       return null;
     }
     final NewOrder oldestNewOrder =
-        matchingNewOrders.get(0); // after the sorting, the first one is the oldest
+        NewOrder.builder().w_id(w_id).d_id(d_id).o_id(oldestOrderId).build();
     logger.debug("Oldest NEW-ORDER retrieved is: {}", oldestNewOrder);
 
     /*
@@ -1069,7 +1373,7 @@ class TPCCBusinessAPI {
    * records are updated.
    *
    * <p><b>NOTE:</b> this code has been factored out of {@link TPCCContractAPI#delivery(TPCCContext,
-   * String)} (and then consequently from {@link
+   * byte[])} (and then consequently from {@link
    * TPCCBusinessAPI#deliverOldestNewOrderForDistrict(ContextWithRegistry, int, int, int, String)})
    * only so that OpenJML won't choke on the exceedingly long method.
    *
@@ -1081,7 +1385,6 @@ class TPCCBusinessAPI {
    * @param ol_delivery_d The delivery date
    * @return The OL_AMOUNT field of the matching ORDER-LINE
    */
-  @Loggable(Loggable.DEBUG)
   private double getOrderLineAmountAndUpdateTime(
       final ContextWithRegistry ctx,
       final int w_id,
@@ -1114,6 +1417,55 @@ class TPCCBusinessAPI {
     return orderLine.getOl_amount();
   }
 
+  /**
+   * Builds the output of a New-Order rolled back because of an unused item number [TPC-C 2.4.3.4].
+   *
+   * <p>The rollback happens before the order number is allocated, so the O_ID displayed is the one
+   * the order would have been allocated; reading it writes nothing. As nothing has been written by
+   * the transaction either, it can be finished like a successful one.
+   *
+   * @param ctx The transaction context
+   * @param input The input parameters of the New-Order
+   * @param warehouse The warehouse of the order
+   * @param district The district of the order
+   * @param customer The customer of the order
+   * @param i_id The unused item number
+   * @return The output of the rolled back New-Order
+   */
+  private NewOrderOutput rollBackNewOrder(
+      final TPCCContext ctx,
+      final NewOrderInput input,
+      final Warehouse warehouse,
+      final District district,
+      final Customer customer,
+      final int i_id) {
+    final int o_id =
+        OrderIdAllocator.SHARDED
+            ? OrderIdAllocator.peek(ctx.getStub(), district)
+            : district.getD_next_o_id();
+    logger.debug("Item number {} is not valid; rolling back order {}", i_id, o_id);
+
+    final Order order =
+        Order.builder()
+            .id(o_id)
+            .d_id(district.getD_id())
+            .w_id(warehouse.getW_id())
+            .c_id(customer.getC_id())
+            .entry_d(input.getO_entry_d())
+            .ol_cnt(input.getI_ids().length)
+            .build();
+    final NewOrderOutput output =
+        NewOrderOutput.builder()
+            .fromWarehouse(warehouse)
+            .fromDistrict(district)
+            .fromCustomer(customer)
+            .fromOrder(order)
+            .message("Item number is not valid")
+            .build();
+    ctx.commit();
+    return output;
+  }
+
   /**
    * Get the OL_AMOUNT field of a matching ORDER-LINE entity.
    *
@@ -1135,7 +1487,7 @@ class TPCCBusinessAPI {
    * the main purpose of this method).
    *
    * <p><b>NOTE:</b> this code has been factored out of {@link TPCCContractAPI#newOrder(TPCCContext,
-   * String)} only so that OpenJML won't choke on the exceedingly long method.
+   * byte[])} only so that OpenJML won't choke on the exceedingly long method.
    *
    * @param ctx The transaction context
    * @param i_id The item's ID
@@ -1148,9 +1500,8 @@ class TPCCBusinessAPI {
    * @param itemsDataCollection The {@link ItemsData} collection to add an entry into
    * @return The OL_AMOUNT field of the resulting ORDER-LINE
    */
-  @Loggable(Loggable.DEBUG)
   private double createOrderLineAndGetAmount(
-      final ContextWithRegistry ctx,
+      final TPCCContext ctx,
       final Item item,
       final int i_id,
       final int i_w_id,
@@ -1160,7 +1511,7 @@ class TPCCBusinessAPI {
       final int nextOrderId,
       final int number,
       final Collection<ItemsData> itemsDataCollection)
-      throws EntityNotFoundException, EntityExistsException, SerializationException {
+      throws EntityNotFoundException, SerializationException {
     final Registry registry = ctx.getRegistry();
 
     /*
@@ -1244,7 +1595,7 @@ class TPCCBusinessAPI {
             .amount(orderLineAmount)
             .dist_info(padDistrictInfo(stock.getS_dist(d_id)))
             .build();
-    registry.create(orderLine);
+    ctx.insert(orderLine);
 
     /*
      * [TPC-C 2.4.3.3]
@@ -1280,7 +1631,9 @@ class TPCCBusinessAPI {
   /**
    * Retrieves the customers from the state database that match the given ID or last name.
    *
-   * <p>At least one of <code>c_id</code> and/or <code>c_last</code> must be a non-null value.
+   * <p>At least one of <code>c_id</code> and/or <code>c_last</code> must be supplied. Since valid
+   * customer IDs start from 1, a non-positive <code>c_id</code> (which is what an omitted C_ID
+   * deserializes to) means that the customer is to be selected by last name.
    *
    * @param ctx The transaction context
    * @param c_w_id The C_W_ID of the customer
@@ -1292,51 +1645,43 @@ class TPCCBusinessAPI {
    * @throws IllegalArgumentException if neither the customer ID nor the customer last name
    *     parameter is supplied
    */
-  @Loggable(Loggable.DEBUG)
   private Customer getCustomerByIDOrLastName(
       final ContextWithRegistry ctx,
       final int c_w_id,
       final int c_d_id,
-      final Integer c_id,
+      final int c_id,
       final String c_last)
       throws EntityNotFoundException, NotFoundException, SerializationException, JsonProcessingException {
-    if (c_id == null && c_last == null) {
+    if (c_id <= 0 && c_last == null) {
       throw new IllegalArgumentException("At least one of c_id and c_last must be specified");
     }
 
-    if (c_id != null) {
+    if (c_id > 0) {
       final Customer customer =
           ctx.getRegistry().read(Customer.builder().w_id(c_w_id).d_id(c_d_id).id(c_id).build());
       return customer;
     } else {
-      final List<Customer> allCustomers =
-          ctx.getRegistry().readAll(Customer.builder().w_id(c_w_id).d_id(c_d_id).build());
-
-      // Stream-based one-liner replaced with below code to accommodate OpenJML...
-      final List<Customer> matchingCustomers = new ArrayList<>();
-      for (final Customer c : allCustomers) {
-        if (c.getC_last().equals(c_last)) {
-          matchingCustomers.add(c);
-        }
-      }
-      if (matchingCustomers.isEmpty()) {
+      /* The index returns the matching customers already sorted by C_FIRST */
+      final List<Integer> matchingCustomerIds =
+          CustomerLastNameIndex.lookup(ctx.getStub(), c_w_id, c_d_id, c_last);
+      if (matchingCustomerIds.isEmpty()) {
         throw new NotFoundException("Customer matching last name '%s' not found".formatted(c_last));
       }
-      matchingCustomers.sort(new CustomerComparator());
 
-      final double N = Math.ceil(matchingCustomers.size() / 2d);
-      if (N > Integer.MAX_VALUE) {
-        logger.warn("Size of matching CUSTOMER list is out of range");
-      }
-      final int n = (int) N;
+      /* Position n/2 rounded up, counting from 1 */
+      final int n = (matchingCustomerIds.size() + 1) / 2;
+      final int id = matchingCustomerIds.get(n - 1);
 
-      return matchingCustomers.get(n);
+      return ctx.getRegistry().read(Customer.builder().w_id(c_w_id).d_id(c_d_id).id(id).build());
     }
   }
 
   /**
    * Retrieves the last order of a customer from the state database.
    *
+   * <p>The order is resolved through the {@link CustomerLastOrderIndex} pointer maintained by
+   * New-Order, so this takes two point reads regardless of the number of orders in the district.
+   *
    * @param ctx The transaction context
    * @param o_w_id The O_W_ID of the order
    * @param o_d_id The O_D_ID of the order
@@ -1344,67 +1689,46 @@ class TPCCBusinessAPI {
    * @return The order with highest O_ID from the orders matching (O_W_ID, O_D_ID, O_C_ID)
    * @throws NotFoundException if the order is not found
    */
-  @Loggable(Loggable.DEBUG)
   private Order getLastOrderOfCustomer(
       final ContextWithRegistry ctx, final int o_w_id, final int o_d_id, final int o_c_id)
-      throws NotFoundException, SerializationException, JsonProcessingException {
-    Registry registry = ctx.getRegistry();
-    final List<Order> allOrders =
-        registry.readAll(Order.builder().w_id(o_w_id).d_id(o_d_id).build());
-    if (allOrders.isEmpty()) {
-      throw new NotFoundException("No orders found");
-    }
-
-    // Stream-based one-liner replaced with below code to accommodate OpenJML...
-    final List<Order> matchingOrders = new ArrayList<>();
-    for (final Order o : allOrders) {
-      if (o.getO_c_id() == o_c_id) {
-        matchingOrders.add(o);
-      }
-    }
-    if (matchingOrders.isEmpty()) {
+      throws NotFoundException, EntityNotFoundException, SerializationException {
+    final Integer o_id = CustomerLastOrderIndex.get(ctx.getStub(), o_w_id, o_d_id, o_c_id);
+    if (o_id == null) {
       throw new NotFoundException("Could not find last order of customer");
     }
-    matchingOrders.sort(new OrderComparator());
 
-    return matchingOrders.get(0);
+    return ctx.getRegistry().read(Order.builder().w_id(o_w_id).d_id(o_d_id).id(o_id).build());
   }
 
   /**
-   * Counts the number of items whose stock is below a given threshold.
+   * Collects the IDs of the items ordered in the given orders.
    *
    * @param ctx The transaction context
    * @param w_id The W_ID to match on
    * @param d_id The D_ID to match on
-   * @param o_id_min The oldest/minimum order ID to consider (inclusive)
-   * @param o_id_max The newest/maximum order ID to consider (exclusive)
+   * @param orderIds The IDs of the (recent) orders to consider
    * @return The unique IDs of items from the recent orders
    */
-  @Loggable(Loggable.DEBUG)
   private List<Integer> getItemIdsOfRecentOrders(
-      final ContextWithRegistry ctx,
-      final int w_id,
-      final int d_id,
-      final int o_id_min,
-      final int o_id_max)
+      final ContextWithRegistry ctx, final int w_id, final int d_id, final List<Integer> orderIds)
       throws EntityNotFoundException, NotFoundException, SerializationException {
     final Set<Integer> itemIds = new HashSet<>();
-    for (int current_o_id = o_id_min; current_o_id < o_id_max; current_o_id++) {
+    for (final int current_o_id : orderIds) {
       final Order order = Order.builder().w_id(w_id).d_id(d_id).id(current_o_id).build();
 
+      final int o_ol_cnt;
       try {
-        ctx.getRegistry().read(order);
+        o_ol_cnt = ORDER_LINE_COUNT.read(ctx.getStub(), order).getInt("o_ol_cnt");
       } catch (EntityNotFoundException _e) {
         logger.warn(
             "Order with o_id={} not found while looking up recent orders; ignoring", current_o_id);
         continue;
       }
 
-      for (int ol_number = 1; ol_number <= order.getO_ol_cnt(); ol_number++) {
+      for (int ol_number = 1; ol_number <= o_ol_cnt; ol_number++) {
         final OrderLine orderLine =
             OrderLine.builder().w_id(w_id).d_id(d_id).o_id(current_o_id).number(ol_number).build();
-        ctx.getRegistry().read(orderLine);
-        itemIds.add(orderLine.getOl_i_id());
+        itemIds.add(ORDER_LINE_ITEM_ID.read(ctx.getStub(), orderLine).getInt("ol_i_id"));
       }
     }
     if (itemIds.isEmpty()) {
@@ -1413,31 +1737,4 @@ class TPCCBusinessAPI {
 
     return new ArrayList<>(itemIds);
   }
-
-  @Loggable(Loggable.DEBUG)
-  private static final class NewOrderComparator implements Comparator<NewOrder> {
-
-    @Override
-    public int compare(final NewOrder a, final NewOrder b) {
-      return a.getNo_o_id() - b.getNo_o_id();
-    }
-  }
-
-  @Loggable(Loggable.DEBUG)
-  private static final class CustomerComparator implements Comparator<Customer> {
-
-    @Override
-    public int compare(final Customer a, final Customer b) {
-      return a.getC_last().compareTo(b.getC_last());
-    }
-  }
-
-  @Loggable(Loggable.DEBUG)
-  private static final class OrderComparator implements Comparator<Order> {
-
-    @Override
-    public int compare(final Order a, final Order b) {
-      return a.getO_id() - b.getO_id();
-    }
-  }
 }
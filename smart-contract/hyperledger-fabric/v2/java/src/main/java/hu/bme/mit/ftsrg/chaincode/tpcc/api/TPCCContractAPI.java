@@ -2,14 +2,23 @@
 package hu.bme.mit.ftsrg.chaincode.tpcc.api;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.jcabi.aspects.Loggable;
 import hu.bme.mit.ftsrg.chaincode.tpcc.data.entity.*;
 import hu.bme.mit.ftsrg.chaincode.tpcc.data.input.*;
+import hu.bme.mit.ftsrg.chaincode.tpcc.data.output.*;
+import hu.bme.mit.ftsrg.chaincode.tpcc.index.YtdDeltaLog;
+import hu.bme.mit.ftsrg.chaincode.tpcc.middleware.ImmutableTableCachedChaincodeStubMiddleware;
+import hu.bme.mit.ftsrg.chaincode.tpcc.middleware.StubMetrics;
 import hu.bme.mit.ftsrg.chaincode.tpcc.middleware.TPCCContext;
 import hu.bme.mit.ftsrg.chaincode.tpcc.util.JSON;
+import hu.bme.mit.ftsrg.chaincode.tpcc.util.Trace;
 import hu.bme.mit.ftsrg.hypernate.entity.EntityExistsException;
 import hu.bme.mit.ftsrg.hypernate.entity.EntityNotFoundException;
 import hu.bme.mit.ftsrg.hypernate.entity.SerializationException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import org.hyperledger.fabric.contract.Context;
 import org.hyperledger.fabric.contract.ContractInterface;
 import org.hyperledger.fabric.contract.annotation.Contact;
@@ -19,6 +28,9 @@ import org.hyperledger.fabric.contract.annotation.Info;
 import org.hyperledger.fabric.contract.annotation.License;
 import org.hyperledger.fabric.contract.annotation.Transaction;
 import org.hyperledger.fabric.shim.ChaincodeStub;
+import org.hyperledger.fabric.shim.ledger.CompositeKey;
+import org.hyperledger.fabric.shim.ledger.KeyValue;
+import org.hyperledger.fabric.shim.ledger.QueryResultsIteratorWithMetadata;
 
 @Contract(
     name = "TPCC",
@@ -29,16 +41,43 @@ import org.hyperledger.fabric.shim.ChaincodeStub;
             version = "0.0.1",
             license = @License(name = "Apache-2.0"),
             contact =
-                @Contact(email = "tnnopcc@example.com", name = "tpcc", url = "http://tpcc.me")))
+                @Contact(email = "tnnopcc@example.com", name = "tpcc", url = "http://tpcc.me")),
+    transactionSerializer = "hu.bme.mit.ftsrg.chaincode.tpcc.api.TPCCTransactionSerializer")
 
 /**
  * Fabric chaincode interface to the TPC-C benchmark implementation. Only contains delegations to
  * the business logic implemented in {@link TPCCBusinessAPI}.
  */
 @Default
-@Loggable(Loggable.DEBUG)
 public final class TPCCContractAPI implements ContractInterface {
 
+  static {
+    /* Build the JSON (de)serializers up front instead of in the first transactions */
+    JSON.warmUp(
+        CreateEntriesInput.class,
+        DeliverInput.class,
+        DeliveryInput.class,
+        GenerateEntriesInput.class,
+        NewOrderInput.class,
+        OrderStatusInput.class,
+        PaymentInput.class,
+        StockLevelInput.class,
+        DeliveryOutput.class,
+        NewOrderOutput.class,
+        OrderStatusOutput.class,
+        PaymentOutput.class,
+        StockLevelOutput.class,
+        Customer.class,
+        District.class,
+        History.class,
+        Item.class,
+        NewOrder.class,
+        Order.class,
+        OrderLine.class,
+        Stock.class,
+        Warehouse.class);
+  }
+
   private final TPCCBusinessAPI api = new TPCCBusinessAPI();
 
   @Override
@@ -55,9 +94,32 @@ public final class TPCCContractAPI implements ContractInterface {
    * @throws EntityNotFoundException if a required entity is not found
    */
   @Transaction(intent = Transaction.TYPE.SUBMIT)
-  public String delivery(final TPCCContext ctx, final String parameters)
+  public byte[] delivery(final TPCCContext ctx, final byte[] parameters)
+      throws EntityNotFoundException, SerializationException, JsonProcessingException {
+    try (ctx) {
+      return JSON.serializeToBytes(
+          api.delivery(ctx, JSON.deserialize(parameters, DeliveryInput.class)));
+    }
+  }
+
+  /**
+   * Executes the oldest deferred Delivery of a district [TPC-C 2.7.2].
+   *
+   * <p>Only needed if <code>tpcc.delivery.deferred</code> is on, i.e., if Delivery only queues the
+   * deliveries of the districts; otherwise the queues are always empty.
+   *
+   * @param ctx The TX context.
+   * @param parameters The JSON encoded parameters (W_ID and D_ID).
+   * @return The JSON encoded result of the district's delivery.
+   * @throws EntityNotFoundException if a required entity is not found
+   */
+  @Transaction(intent = Transaction.TYPE.SUBMIT)
+  public byte[] deliver(final TPCCContext ctx, final byte[] parameters)
       throws EntityNotFoundException, SerializationException, JsonProcessingException {
-    return JSON.serialize(api.delivery(ctx, JSON.deserialize(parameters, DeliveryInput.class)));
+    try (ctx) {
+      return JSON.serializeToBytes(
+          api.deliver(ctx, JSON.deserialize(parameters, DeliverInput.class)));
+    }
   }
 
   /**
@@ -70,9 +132,12 @@ public final class TPCCContractAPI implements ContractInterface {
    * @throws EntityExistsException if an entity that should be created already exists
    */
   @Transaction(intent = Transaction.TYPE.SUBMIT)
-  public String newOrder(final TPCCContext ctx, final String parameters)
+  public byte[] newOrder(final TPCCContext ctx, final byte[] parameters)
       throws EntityNotFoundException, EntityExistsException, SerializationException, JsonProcessingException {
-    return JSON.serialize(api.newOrder(ctx, JSON.deserialize(parameters, NewOrderInput.class)));
+    try (ctx) {
+      return JSON.serializeToBytes(
+          api.newOrder(ctx, JSON.deserialize(parameters, NewOrderInput.class)));
+    }
   }
 
   /**
@@ -83,9 +148,12 @@ public final class TPCCContractAPI implements ContractInterface {
    * @return The JSON encoded query results according to the specification.
    */
   @Transaction(intent = Transaction.TYPE.EVALUATE)
-  public String orderStatus(final TPCCContext ctx, final String parameters)
+  public byte[] orderStatus(final TPCCContext ctx, final byte[] parameters)
       throws NotFoundException, EntityNotFoundException, SerializationException, JsonProcessingException {
-    return JSON.serialize(api.orderStatus(ctx, JSON.deserialize(parameters, OrderStatusInput.class)));
+    try (ctx) {
+      return JSON.serializeToBytes(
+          api.orderStatus(ctx, JSON.deserialize(parameters, OrderStatusInput.class)));
+    }
   }
 
   /**
@@ -99,9 +167,12 @@ public final class TPCCContractAPI implements ContractInterface {
    * @throws NotFoundException if some entities are not found in the business logic
    */
   @Transaction(intent = Transaction.TYPE.SUBMIT)
-  public String payment(final TPCCContext ctx, final String parameters)
+  public byte[] payment(final TPCCContext ctx, final byte[] parameters)
       throws EntityNotFoundException, EntityExistsException, NotFoundException, SerializationException, JsonProcessingException {
-    return JSON.serialize(api.payment(ctx, JSON.deserialize(parameters, PaymentInput.class)));
+    try (ctx) {
+      return JSON.serializeToBytes(
+          api.payment(ctx, JSON.deserialize(parameters, PaymentInput.class)));
+    }
   }
 
   /**
@@ -114,9 +185,44 @@ public final class TPCCContractAPI implements ContractInterface {
    * @throws NotFoundException if some entities are not found in the business logic
    */
   @Transaction(intent = Transaction.TYPE.EVALUATE)
-  public String stockLevel(final TPCCContext ctx, final String parameters)
+  public byte[] stockLevel(final TPCCContext ctx, final byte[] parameters)
       throws EntityNotFoundException, NotFoundException, SerializationException, JsonProcessingException {
-    return JSON.serialize(api.stockLevel(ctx, JSON.deserialize(parameters, StockLevelInput.class)));
+    try (ctx) {
+      return JSON.serializeToBytes(
+          api.stockLevel(ctx, JSON.deserialize(parameters, StockLevelInput.class)));
+    }
+  }
+
+  /**
+   * Loads a batch of table rows of the initial database population [TPC-C 4.3.3.1].
+   *
+   * @param ctx The TX context.
+   * @param parameters The JSON encoded batch of rows (see <code>workload/caliper/load.js</code>).
+   * @return The JSON encoded number of rows loaded, keyed by table name.
+   */
+  @Transaction(intent = Transaction.TYPE.SUBMIT)
+  public byte[] createEntries(final TPCCContext ctx, final byte[] parameters)
+      throws SerializationException, JsonProcessingException {
+    try (ctx) {
+      return JSON.serializeToBytes(
+          api.createEntries(ctx, JSON.deserialize(parameters, CreateEntriesInput.class)));
+    }
+  }
+
+  /**
+   * Generates and loads a chunk of the initial population from a seed [TPC-C 4.3.3.1].
+   *
+   * @param ctx The TX context.
+   * @param parameters The JSON encoded seed and scale of the population, and the chunk to generate.
+   * @return The JSON encoded number of rows loaded, keyed by table name.
+   */
+  @Transaction(intent = Transaction.TYPE.SUBMIT)
+  public byte[] generateEntries(final TPCCContext ctx, final byte[] parameters)
+      throws SerializationException, JsonProcessingException {
+    try (ctx) {
+      return JSON.serializeToBytes(
+          api.generateEntries(ctx, JSON.deserialize(parameters, GenerateEntriesInput.class)));
+    }
   }
 
   /**
@@ -126,7 +232,9 @@ public final class TPCCContractAPI implements ContractInterface {
    */
   @Transaction(intent = Transaction.TYPE.SUBMIT)
   public void init(final TPCCContext ctx) throws EntityExistsException, SerializationException {
-    api.init(ctx);
+    try (ctx) {
+      api.init(ctx);
+    }
   }
 
   /**
@@ -139,10 +247,32 @@ public final class TPCCContractAPI implements ContractInterface {
   @Transaction(intent = Transaction.TYPE.EVALUATE)
   public String readWarehouse(final TPCCContext ctx, final int w_id)
       throws EntityNotFoundException, SerializationException, JsonProcessingException {
-    final Warehouse warehouse = Warehouse.builder().id(w_id).build();
-    ctx.getRegistry().read(warehouse);
-    ctx.commit();
-    return JSON.serialize(warehouse);
+    try (ctx) {
+      final Warehouse warehouse = Warehouse.builder().id(w_id).build();
+      ctx.getRegistry().read(warehouse);
+      /* W_YTD includes the increments not yet compacted (see YtdDeltaLog) */
+      warehouse.increaseYTD(YtdDeltaLog.pendingOf(ctx.getStub(), warehouse));
+      ctx.commit();
+      return JSON.serialize(warehouse);
+    }
+  }
+
+  /**
+   * Folds the pending YTD increments of a warehouse and its districts into the entities.
+   *
+   * <p>Only needed if <code>tpcc.payment.ytdDeltas</code> is on, i.e., if Payment records the YTD
+   * increments separately; otherwise there is nothing to compact.
+   *
+   * @param ctx The transaction context
+   * @param w_id The W_ID of the warehouse
+   * @return The JSON encoded warehouse with the increments applied
+   */
+  @Transaction(intent = Transaction.TYPE.SUBMIT)
+  public String compactYtd(final TPCCContext ctx, final int w_id)
+      throws EntityNotFoundException, SerializationException, JsonProcessingException {
+    try (ctx) {
+      return JSON.serialize(api.compactYtd(ctx, w_id));
+    }
   }
 
   /**
@@ -157,10 +287,12 @@ public final class TPCCContractAPI implements ContractInterface {
   @Transaction(intent = Transaction.TYPE.EVALUATE)
   public String readOrder(final TPCCContext ctx, final int w_id, final int d_id, final int o_id)
       throws EntityNotFoundException, SerializationException, JsonProcessingException {
-    final Order order = Order.builder().w_id(w_id).d_id(d_id).id(o_id).build();
-    ctx.getRegistry().read(order);
-    ctx.commit();
-    return JSON.serialize(order);
+    try (ctx) {
+      final Order order = Order.builder().w_id(w_id).d_id(d_id).id(o_id).build();
+      ctx.getRegistry().read(order);
+      ctx.commit();
+      return JSON.serialize(order);
+    }
   }
 
   /**
@@ -172,10 +304,12 @@ public final class TPCCContractAPI implements ContractInterface {
    */
   @Transaction(intent = Transaction.TYPE.EVALUATE)
   public String readItem(final TPCCContext ctx, final int i_id) throws EntityNotFoundException, SerializationException, JsonProcessingException {
-    final Item item = Item.builder().id(i_id).build();
-    ctx.getRegistry().read(item);
-    ctx.commit();
-    return JSON.serialize(item);
+    try (ctx) {
+      final Item item = Item.builder().id(i_id).build();
+      ctx.getRegistry().read(item);
+      ctx.commit();
+      return JSON.serialize(item);
+    }
   }
 
   /**
@@ -190,10 +324,78 @@ public final class TPCCContractAPI implements ContractInterface {
   @Transaction(intent = Transaction.TYPE.EVALUATE)
   public String readNewOrder(final TPCCContext ctx, final int w_id, final int d_id, final int o_id)
       throws EntityNotFoundException, SerializationException, JsonProcessingException {
-    final NewOrder newOrder = NewOrder.builder().w_id(w_id).d_id(d_id).o_id(o_id).build();
-    ctx.getRegistry().read(newOrder);
-    ctx.commit();
-    return JSON.serialize(newOrder);
+    try (ctx) {
+      final NewOrder newOrder = NewOrder.builder().w_id(w_id).d_id(d_id).o_id(o_id).build();
+      ctx.getRegistry().read(newOrder);
+      ctx.commit();
+      return JSON.serialize(newOrder);
+    }
+  }
+
+  /**
+   * Returns the results of a deferred Delivery recorded so far [TPC-C 2.7.2.2].
+   *
+   * @param ctx The transaction context
+   * @param w_id The W_ID of the Delivery
+   * @param job_id The ID of the Delivery transaction (returned by the Delivery as its job ID)
+   * @return The JSON encoded delivered orders and the number of skipped and pending districts
+   */
+  @Transaction(intent = Transaction.TYPE.EVALUATE)
+  public String readDelivery(final TPCCContext ctx, final int w_id, final String job_id)
+      throws JsonProcessingException {
+    try (ctx) {
+      return JSON.serialize(api.deliveryResult(ctx, w_id, job_id));
+    }
+  }
+
+  /**
+   * Returns a page of the payment history of a customer, oldest first (for auditing).
+   *
+   * <p>The history of a customer grows with every Payment, so it is read one page at a time: only
+   * the rows of the requested page are read and held in memory. To read the whole history, start
+   * with an empty bookmark and pass the returned one to the next call, until a page has fewer rows
+   * than the page size.
+   *
+   * @param ctx The transaction context
+   * @param w_id The C_W_ID of the customer
+   * @param d_id The C_D_ID of the customer
+   * @param c_id The C_ID of the customer
+   * @param pageSize The maximum number of HISTORY rows to return
+   * @param bookmark The bookmark returned with the previous page, or empty for the first page
+   * @return The JSON encoded page: the customer's HISTORY rows (<code>history</code>) and the
+   *     bookmark of the next page (<code>bookmark</code>)
+   */
+  @Transaction(intent = Transaction.TYPE.EVALUATE)
+  public byte[] readHistory(
+      final TPCCContext ctx,
+      final int w_id,
+      final int d_id,
+      final int c_id,
+      final int pageSize,
+      final String bookmark)
+      throws SerializationException, JsonProcessingException {
+    try (ctx) {
+      /* The customer's rows share the first three key parts: (H_C_ID, H_C_D_ID, H_C_W_ID) */
+      final History customer = History.builder().c_w_id(w_id).c_d_id(d_id).c_id(c_id).build();
+      final ChaincodeStub stub = ctx.getStub();
+      final CompositeKey partialKey =
+          stub.createCompositeKey(customer.getType(), Arrays.copyOf(customer.getKeyParts(), 3));
+
+      final List<History> rows = new ArrayList<>();
+      final Map<String, Object> page = new LinkedHashMap<>();
+      try (QueryResultsIteratorWithMetadata<KeyValue> entries =
+          stub.getStateByPartialCompositeKeyWithPagination(partialKey, pageSize, bookmark)) {
+        for (final KeyValue entry : entries) {
+          final History history = new History();
+          history.fromBuffer(entry.getValue());
+          rows.add(history);
+        }
+        page.put("history", rows);
+        page.put("bookmark", entries.getMetadata().getBookmark());
+      }
+      ctx.commit();
+      return JSON.serializeToBytes(page);
+    }
   }
 
   /**
@@ -205,8 +407,54 @@ public final class TPCCContractAPI implements ContractInterface {
   @SuppressWarnings("SameReturnValue")
   @Transaction(intent = Transaction.TYPE.EVALUATE)
   public String ping(final TPCCContext ctx) {
-    ctx.commit();
-    return "pong";
+    try (ctx) {
+      ctx.commit();
+      return "pong";
+    }
+  }
+
+  /**
+   * Returns the stub call statistics collected since the chaincode started (for diagnostics).
+   *
+   * <p>For every transaction profile (invoked function), the number of calls, the bytes moved and
+   * a latency histogram are reported for each kind of stub call, and for the transactions
+   * themselves. Statistics are only collected for the transactions whose stub chain includes the
+   * <code>metrics</code> layer; the statistics of the immutable table cache are always reported.
+   *
+   * @param ctx The transaction context
+   * @return The JSON encoded statistics
+   */
+  @Transaction(intent = Transaction.TYPE.EVALUATE)
+  public String metrics(final TPCCContext ctx) throws JsonProcessingException {
+    try (ctx) {
+      final Map<String, Object> metrics = new LinkedHashMap<>();
+      metrics.put("profiles", StubMetrics.snapshot());
+      final Map<String, Object> immutableCache = new LinkedHashMap<>();
+      immutableCache.put("hits", ImmutableTableCachedChaincodeStubMiddleware.getHits());
+      immutableCache.put("misses", ImmutableTableCachedChaincodeStubMiddleware.getMisses());
+      immutableCache.put("size", ImmutableTableCachedChaincodeStubMiddleware.getSize());
+      metrics.put("immutableCache", immutableCache);
+      ctx.commit();
+      return JSON.serialize(metrics);
+    }
+  }
+
+  /**
+   * Switches entry/exit tracing (with wall-clock and CPU time) on or off (for diagnostics).
+   *
+   * <p>Only affects the chaincode process of the peer that evaluates the transaction.
+   *
+   * @param ctx The transaction context
+   * @param enabled Whether tracing should be on
+   * @return Whether tracing is now on
+   */
+  @Transaction(intent = Transaction.TYPE.EVALUATE)
+  public boolean trace(final TPCCContext ctx, final boolean enabled) {
+    try (ctx) {
+      Trace.setEnabled(enabled);
+      ctx.commit();
+      return Trace.isEnabled();
+    }
   }
 
   /**
@@ -229,8 +477,10 @@ public final class TPCCContractAPI implements ContractInterface {
   @Transaction(intent = Transaction.TYPE.EVALUATE)
   public String OJMLTEST__getCustomer(
       final TPCCContext ctx, final int c_w_id, final int c_d_id, final int c_id) throws JsonProcessingException {
-    final Customer customer = Customer.builder().w_id(c_w_id).d_id(c_d_id).id(c_id).build();
-    ctx.commit();
-    return JSON.serialize(customer);
+    try (ctx) {
+      final Customer customer = Customer.builder().w_id(c_w_id).d_id(c_d_id).id(c_id).build();
+      ctx.commit();
+      return JSON.serialize(customer);
+    }
   }
 }
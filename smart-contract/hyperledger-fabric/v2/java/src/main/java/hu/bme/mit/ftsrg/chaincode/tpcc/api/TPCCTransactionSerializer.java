@@ -0,0 +1,45 @@
+/* SPDX-License-Identifier: Apache-2.0 */
+package hu.bme.mit.ftsrg.chaincode.tpcc.api;
+
+import org.hyperledger.fabric.contract.annotation.Serializer;
+import org.hyperledger.fabric.contract.execution.JSONTransactionSerializer;
+import org.hyperledger.fabric.contract.execution.SerializerInterface;
+import org.hyperledger.fabric.contract.metadata.TypeSchema;
+
+/**
+ * Transaction serializer that passes <code>byte[]</code> parameters and return values through
+ * unchanged.
+ *
+ * <p>The default {@link JSONTransactionSerializer} treats <code>byte[]</code> as an array of
+ * numbers. With this serializer, transactions can take and return the raw (JSON-encoded) payload,
+ * which {@link hu.bme.mit.ftsrg.chaincode.tpcc.util.JSON} then (de)serializes without an
+ * intermediate <code>String</code>. Every other type is handled by the default serializer.
+ */
+@Serializer(target = Serializer.TARGET.TRANSACTION)
+public final class TPCCTransactionSerializer implements SerializerInterface {
+
+  private final JSONTransactionSerializer fallback = new JSONTransactionSerializer();
+
+  @Override
+  public byte[] toBuffer(final Object value, final TypeSchema ts) {
+    if (value instanceof byte[] bytes) {
+      return bytes;
+    }
+
+    return this.fallback.toBuffer(value, ts);
+  }
+
+  @Override
+  public Object fromBuffer(final byte[] buffer, final TypeSchema ts) {
+    if (isByteArray(ts)) {
+      return buffer;
+    }
+
+    return this.fallback.fromBuffer(buffer, ts);
+  }
+
+  private static boolean isByteArray(final TypeSchema ts) {
+    final TypeSchema items = ts.getItems();
+    return "array".equals(ts.getType()) && items != null && "int8".equals(items.getFormat());
+  }
+}
@@ -0,0 +1,364 @@
+/* SPDX-License-Identifier: Apache-2.0 */
+package hu.bme.mit.ftsrg.chaincode.tpcc.data.entity;
+
+import hu.bme.mit.ftsrg.chaincode.tpcc.util.Config;
+import hu.bme.mit.ftsrg.hypernate.entity.SerializationException;
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.zip.CRC32;
+
+/**
+ * Compact binary encoding of entities, backing {@link TPCCEntity}.
+ *
+ * <p>Layout: a {@link #MAGIC} byte, the 4-byte schema fingerprint of the entity class, then the
+ * fields in name order (the order of the JSON encoding). Integers are zig-zag varints, doubles are
+ * 8 bytes, strings are a varint of (UTF-8 length + 1) followed by the bytes, with 0 standing for
+ * <code>null</code>. The fingerprint is a CRC32 of the field names and types, so a value written
+ * with a different version of an entity class is rejected instead of being misread.
+ *
+ * <p>JSON values start with <code>{</code>, so the two encodings can be told apart by their first
+ * byte; binary values are always decodable, whatever the <code>tpcc.codec</code> setting is.
+ */
+final class BinaryEntityCodec {
+
+  /** Whether entities should be written in the binary encoding (<code>tpcc.codec=binary</code>). */
+  static final boolean WRITE_BINARY =
+      "binary".equalsIgnoreCase(Config.getString("tpcc.codec", "json").trim());
+
+  /** First byte of binary values (never the first byte of a JSON document). */
+  static final byte MAGIC = 0x01;
+
+  private static final Map<Class<?>, Schema> schemasByClass = new ConcurrentHashMap<>();
+
+  private BinaryEntityCodec() {}
+
+  /**
+   * Check whether a ledger value is in the binary encoding.
+   *
+   * @param buffer The ledger value
+   * @return <code>true</code> if the value is binary-encoded
+   */
+  static boolean isBinary(final byte[] buffer) {
+    return buffer != null && buffer.length > 0 && buffer[0] == MAGIC;
+  }
+
+  /**
+   * Encode an entity.
+   *
+   * @param entity The entity to encode
+   * @return The binary encoding of the entity
+   * @throws SerializationException if a field cannot be read
+   */
+  static byte[] encode(final TPCCEntity entity) throws SerializationException {
+    return encode(entity, schemaOf(entity.getClass()));
+  }
+
+  /**
+   * Encode some fields of an entity.
+   *
+   * @param entity The entity to encode
+   * @param schema The fields to encode
+   * @return The binary encoding of the fields
+   * @throws SerializationException if a field cannot be read
+   */
+  static byte[] encode(final TPCCEntity entity, final Schema schema) throws SerializationException {
+    final Output out = new Output();
+    out.write(MAGIC);
+    out.writeFixedInt(schema.fingerprint);
+    try {
+      for (final Field field : schema.fields) {
+        final Class<?> type = field.getType();
+        if (type == int.class) {
+          out.writeVarLong(field.getInt(entity));
+        } else if (type == long.class) {
+          out.writeVarLong(field.getLong(entity));
+        } else if (type == double.class) {
+          out.writeFixedLong(Double.doubleToRawLongBits(field.getDouble(entity)));
+        } else if (type == boolean.class) {
+          out.write(field.getBoolean(entity) ? 1 : 0);
+        } else {
+          out.writeString((String) field.get(entity));
+        }
+      }
+    } catch (IllegalAccessException e) {
+      throw new SerializationException("Cannot encode " + entity.getClass().getSimpleName(), e);
+    }
+    return out.toByteArray();
+  }
+
+  /**
+   * Decode a binary-encoded value into an entity.
+   *
+   * @param buffer The binary-encoded value
+   * @param entity The entity to set the fields of
+   * @throws SerializationException if the value is malformed or was written with another schema
+   */
+  static void decode(final byte[] buffer, final TPCCEntity entity) throws SerializationException {
+    decode(buffer, entity, schemaOf(entity.getClass()));
+  }
+
+  /**
+   * Decode some fields of an entity from their binary encoding.
+   *
+   * @param buffer The binary-encoded fields
+   * @param entity The entity to set the fields of
+   * @param schema The encoded fields
+   * @throws SerializationException if the value is malformed or was written with another schema
+   */
+  static void decode(final byte[] buffer, final TPCCEntity entity, final Schema schema)
+      throws SerializationException {
+    final ByteBuffer in = ByteBuffer.wrap(buffer);
+    try {
+      in.get(); // MAGIC
+      final int fingerprint = in.getInt();
+      if (fingerprint != schema.fingerprint) {
+        throw new SerializationException(
+            "Schema mismatch while decoding %s: expected %08x, got %08x"
+                .formatted(entity.getClass().getSimpleName(), schema.fingerprint, fingerprint));
+      }
+
+      for (final Field field : schema.fields) {
+        final Class<?> type = field.getType();
+        if (type == int.class) {
+          field.setInt(entity, (int) readVarLong(in));
+        } else if (type == long.class) {
+          field.setLong(entity, readVarLong(in));
+        } else if (type == double.class) {
+          field.setDouble(entity, Double.longBitsToDouble(in.getLong()));
+        } else if (type == boolean.class) {
+          field.setBoolean(entity, in.get() != 0);
+        } else {
+          field.set(entity, readString(in));
+        }
+      }
+    } catch (IllegalAccessException | BufferUnderflowException e) {
+      throw new SerializationException("Cannot decode " + entity.getClass().getSimpleName(), e);
+    }
+  }
+
+  /**
+   * Decode only some fields of a binary-encoded value, skipping over the rest.
+   *
+   * <p>Skipped strings are not decoded, and decoding stops after the last requested field.
+   *
+   * @param buffer The binary-encoded value
+   * @param clazz The entity class the value was written from
+   * @param indexByField The position of each requested field in the result
+   * @return The values of the requested fields (boxed) at their positions
+   * @throws SerializationException if the value is malformed or was written with another schema
+   */
+  static Object[] project(
+      final byte[] buffer,
+      final Class<? extends TPCCEntity> clazz,
+      final Map<String, Integer> indexByField)
+      throws SerializationException {
+    final Schema schema = schemaOf(clazz);
+    final Object[] values = new Object[indexByField.size()];
+    final ByteBuffer in = ByteBuffer.wrap(buffer);
+    try {
+      in.get(); // MAGIC
+      final int fingerprint = in.getInt();
+      if (fingerprint != schema.fingerprint) {
+        throw new SerializationException(
+            "Schema mismatch while decoding %s: expected %08x, got %08x"
+                .formatted(clazz.getSimpleName(), schema.fingerprint, fingerprint));
+      }
+
+      int remaining = values.length;
+      for (int i = 0; i < schema.fields.length && remaining > 0; ++i) {
+        final Field field = schema.fields[i];
+        final Class<?> type = field.getType();
+        final Integer index = indexByField.get(field.getName());
+        if (index == null) {
+          skip(in, type);
+          continue;
+        }
+
+        if (type == int.class) {
+          values[index] = (int) readVarLong(in);
+        } else if (type == long.class) {
+          values[index] = readVarLong(in);
+        } else if (type == double.class) {
+          values[index] = Double.longBitsToDouble(in.getLong());
+        } else if (type == boolean.class) {
+          values[index] = in.get() != 0;
+        } else {
+          values[index] = readString(in);
+        }
+        --remaining;
+      }
+    } catch (BufferUnderflowException e) {
+      throw new SerializationException("Cannot decode " + clazz.getSimpleName(), e);
+    }
+    return values;
+  }
+
+  private static void skip(final ByteBuffer in, final Class<?> type) {
+    if (type == int.class || type == long.class) {
+      readVarLong(in);
+    } else if (type == double.class) {
+      skipBytes(in, Long.BYTES);
+    } else if (type == boolean.class) {
+      in.get();
+    } else {
+      final int lengthPlusOne = readLengthPlusOne(in);
+      if (lengthPlusOne > 0) {
+        skipBytes(in, lengthPlusOne - 1);
+      }
+    }
+  }
+
+  private static void skipBytes(final ByteBuffer in, final int count) {
+    if (count > in.remaining()) {
+      throw new BufferUnderflowException();
+    }
+
+    in.position(in.position() + count);
+  }
+
+  private static Schema schemaOf(final Class<?> clazz) {
+    return schemasByClass.computeIfAbsent(clazz, c -> new Schema(c, field -> true));
+  }
+
+  private static long readVarLong(final ByteBuffer in) {
+    long raw = 0;
+    int shift = 0;
+    byte b;
+    do {
+      b = in.get();
+      raw |= (long) (b & 0x7F) << shift;
+      shift += 7;
+    } while ((b & 0x80) != 0);
+    return (raw >>> 1) ^ -(raw & 1);
+  }
+
+  /* Read a string's length + 1 (0 for null), checking that the string fits in the buffer */
+  private static int readLengthPlusOne(final ByteBuffer in) {
+    final long lengthPlusOne = readVarLong(in);
+    if (lengthPlusOne < 0 || lengthPlusOne - 1 > in.remaining()) {
+      throw new BufferUnderflowException();
+    }
+
+    return (int) lengthPlusOne;
+  }
+
+  private static String readString(final ByteBuffer in) {
+    final int lengthPlusOne = readLengthPlusOne(in);
+    if (lengthPlusOne == 0) {
+      return null;
+    }
+
+    final String value =
+        new String(in.array(), in.position(), lengthPlusOne - 1, StandardCharsets.UTF_8);
+    in.position(in.position() + lengthPlusOne - 1);
+    return value;
+  }
+
+  /** The encoded fields of an entity class and their fingerprint. */
+  static final class Schema {
+
+    private final Field[] fields;
+    private final int fingerprint;
+
+    /**
+     * Create the schema of some fields of an entity class.
+     *
+     * @param clazz The entity class
+     * @param filter Selects the persistent fields to encode
+     */
+    Schema(final Class<?> clazz, final Predicate<Field> filter) {
+      this.fields =
+          Arrays.stream(clazz.getDeclaredFields())
+              .filter(f -> !Modifier.isStatic(f.getModifiers()))
+              .filter(f -> !Modifier.isTransient(f.getModifiers()))
+              .filter(filter)
+              .sorted(Comparator.comparing(Field::getName))
+              .toArray(Field[]::new);
+
+      final CRC32 crc = new CRC32();
+      for (final Field field : this.fields) {
+        final Class<?> type = field.getType();
+        if (type != int.class
+            && type != long.class
+            && type != double.class
+            && type != boolean.class
+            && type != String.class) {
+          throw new IllegalStateException(
+              "Unsupported field type %s of %s.%s"
+                  .formatted(type, clazz.getSimpleName(), field.getName()));
+        }
+        field.setAccessible(true);
+        crc.update((field.getName() + ':' + type.getName() + ';').getBytes(StandardCharsets.UTF_8));
+      }
+      this.fingerprint = (int) crc.getValue();
+    }
+  }
+
+  /** Growable output buffer without the synchronization of {@link ByteArrayOutputStream}. */
+  private static final class Output {
+
+    private byte[] bytes = new byte[128];
+    private int size = 0;
+
+    void write(final int b) {
+      ensureCapacity(1);
+      this.bytes[this.size++] = (byte) b;
+    }
+
+    void writeFixedInt(final int value) {
+      ensureCapacity(4);
+      for (int shift = 24; shift >= 0; shift -= 8) {
+        this.bytes[this.size++] = (byte) (value >>> shift);
+      }
+    }
+
+    void writeFixedLong(final long value) {
+      ensureCapacity(8);
+      for (int shift = 56; shift >= 0; shift -= 8) {
+        this.bytes[this.size++] = (byte) (value >>> shift);
+      }
+    }
+
+    void writeVarLong(final long value) {
+      ensureCapacity(10);
+      long zigZag = (value << 1) ^ (value >> 63);
+      while ((zigZag & ~0x7FL) != 0) {
+        this.bytes[this.size++] = (byte) ((zigZag & 0x7F) | 0x80);
+        zigZag >>>= 7;
+      }
+      this.bytes[this.size++] = (byte) zigZag;
+    }
+
+    void writeString(final String value) {
+      if (value == null) {
+        writeVarLong(0);
+        return;
+      }
+
+      final byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+      writeVarLong(utf8.length + 1L);
+      ensureCapacity(utf8.length);
+      System.arraycopy(utf8, 0, this.bytes, this.size, utf8.length);
+      this.size += utf8.length;
+    }
+
+    byte[] toByteArray() {
+      return Arrays.copyOf(this.bytes, this.size);
+    }
+
+    private void ensureCapacity(final int extra) {
+      if (this.size + extra > this.bytes.length) {
+        this.bytes = Arrays.copyOf(this.bytes, Math.max(this.bytes.length * 2, this.size + extra));
+      }
+    }
+  }
+}
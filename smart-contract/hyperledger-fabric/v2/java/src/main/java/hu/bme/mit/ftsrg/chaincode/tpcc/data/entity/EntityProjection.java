@@ -0,0 +1,226 @@
+/* SPDX-License-Identifier: Apache-2.0 */
+package hu.bme.mit.ftsrg.chaincode.tpcc.data.entity;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import hu.bme.mit.ftsrg.chaincode.tpcc.util.EntityKeys;
+import hu.bme.mit.ftsrg.hypernate.entity.EntityNotFoundException;
+import hu.bme.mit.ftsrg.hypernate.entity.SerializationException;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
+import java.util.Map;
+import org.hyperledger.fabric.shim.ChaincodeStub;
+
+/**
+ * A read of selected fields of an entity, without deserializing the whole entity.
+ *
+ * <p>Scan-heavy transactions often need one or two fields of each entity they read (e.g.,
+ * Stock-Level only looks at S_QUANTITY of each STOCK), but a full read decodes every field,
+ * including long strings like S_DIST_xx and S_DATA. A projection instead walks the stored value
+ * with a streaming parser and only materializes the requested fields: the other values are skipped
+ * without being decoded, and parsing stops as soon as every requested field has been seen. Both the
+ * JSON and the binary encoding (see {@link TPCCEntity}) are supported.
+ *
+ * <p>Projections are immutable and meant to be created once and kept in a constant:
+ *
+ * <pre>{@code
+ * static final EntityProjection<Stock> QUANTITY = EntityProjection.of(Stock.class, "s_quantity");
+ * ...
+ * final int quantity = QUANTITY.read(ctx.getStub(), stockKey).getInt("s_quantity");
+ * }</pre>
+ *
+ * @param <T> The type of the projected entity
+ */
+public final class EntityProjection<T extends TPCCEntity> {
+
+  private static final JsonFactory jsonFactory = new JsonFactory();
+
+  private final Class<T> clazz;
+  private final Map<String, Integer> indexByField;
+
+  private EntityProjection(final Class<T> clazz, final Map<String, Integer> indexByField) {
+    this.clazz = clazz;
+    this.indexByField = indexByField;
+  }
+
+  /**
+   * Create a projection.
+   *
+   * @param clazz The entity class
+   * @param fields The names of the fields to read
+   * @return The projection of the given fields
+   * @throws IllegalArgumentException if a field is not a persistent field of the entity class
+   */
+  public static <T extends TPCCEntity> EntityProjection<T> of(
+      final Class<T> clazz, final String... fields) {
+    final Map<String, Integer> indexByField = new HashMap<>();
+    for (final String name : fields) {
+      final Field field;
+      try {
+        field = clazz.getDeclaredField(name);
+      } catch (NoSuchFieldException e) {
+        throw new IllegalArgumentException(
+            "%s has no field %s".formatted(clazz.getSimpleName(), name), e);
+      }
+      if (Modifier.isStatic(field.getModifiers()) || Modifier.isTransient(field.getModifiers())) {
+        throw new IllegalArgumentException(
+            "%s.%s is not persisted".formatted(clazz.getSimpleName(), name));
+      }
+      indexByField.putIfAbsent(name, indexByField.size());
+    }
+    return new EntityProjection<>(clazz, Map.copyOf(indexByField));
+  }
+
+  /**
+   * Read the projected fields of an entity from the ledger.
+   *
+   * @param stub The stub to read the entity through
+   * @param key The entity to read (only its key parts need to be set)
+   * @return The projected fields of the stored entity
+   * @throws EntityNotFoundException if the entity does not exist
+   * @throws SerializationException if the stored value is malformed
+   */
+  public Row read(final ChaincodeStub stub, final T key)
+      throws EntityNotFoundException, SerializationException {
+    final String ledgerKey = EntityKeys.keyOf(key);
+    final byte[] value = stub.getState(ledgerKey);
+    if (value == null || value.length == 0) {
+      throw new EntityNotFoundException("Entity with key %s not found".formatted(ledgerKey));
+    }
+
+    return decode(value);
+  }
+
+  /**
+   * Decode the projected fields of a stored value.
+   *
+   * @param value The stored value of an entity
+   * @return The projected fields of the entity
+   * @throws SerializationException if the value is malformed
+   */
+  public Row decode(final byte[] value) throws SerializationException {
+    if (BinaryEntityCodec.isBinary(value)) {
+      return new Row(BinaryEntityCodec.project(value, this.clazz, this.indexByField));
+    }
+
+    return new Row(decodeJson(value));
+  }
+
+  private Object[] decodeJson(final byte[] value) throws SerializationException {
+    final Object[] values = new Object[this.indexByField.size()];
+    try (JsonParser parser = jsonFactory.createParser(value)) {
+      if (parser.nextToken() != JsonToken.START_OBJECT) {
+        throw new SerializationException("Not a JSON object: " + this.clazz.getSimpleName());
+      }
+
+      int remaining = values.length;
+      while (remaining > 0 && parser.nextToken() == JsonToken.FIELD_NAME) {
+        final Integer index = this.indexByField.get(parser.currentName());
+        final JsonToken token = parser.nextToken();
+        if (index == null) {
+          /* Scalars are skipped by the next nextToken() without being decoded */
+          parser.skipChildren();
+          continue;
+        }
+
+        values[index] = jsonValue(parser, token);
+        --remaining;
+      }
+    } catch (IOException e) {
+      throw new SerializationException("Cannot decode " + this.clazz.getSimpleName(), e);
+    }
+    return values;
+  }
+
+  private static Object jsonValue(final JsonParser parser, final JsonToken token)
+      throws IOException {
+    return switch (token) {
+      case VALUE_NUMBER_INT -> parser.getLongValue();
+      case VALUE_NUMBER_FLOAT -> parser.getDoubleValue();
+      case VALUE_STRING -> parser.getText();
+      case VALUE_TRUE -> true;
+      case VALUE_FALSE -> false;
+      case VALUE_NULL -> null;
+      default -> {
+        parser.skipChildren();
+        yield null;
+      }
+    };
+  }
+
+  /** The projected fields of a single entity. */
+  public final class Row {
+
+    private final Object[] values;
+
+    private Row(final Object[] values) {
+      this.values = values;
+    }
+
+    /**
+     * Get a projected integer field.
+     *
+     * @param field The name of the field
+     * @return The value of the field, or 0 if it was not stored
+     */
+    public int getInt(final String field) {
+      final Object value = get(field);
+      return value == null ? 0 : ((Number) value).intValue();
+    }
+
+    /**
+     * Get a projected long field.
+     *
+     * @param field The name of the field
+     * @return The value of the field, or 0 if it was not stored
+     */
+    public long getLong(final String field) {
+      final Object value = get(field);
+      return value == null ? 0 : ((Number) value).longValue();
+    }
+
+    /**
+     * Get a projected floating-point field.
+     *
+     * @param field The name of the field
+     * @return The value of the field, or 0 if it was not stored
+     */
+    public double getDouble(final String field) {
+      final Object value = get(field);
+      return value == null ? 0 : ((Number) value).doubleValue();
+    }
+
+    /**
+     * Get a projected boolean field.
+     *
+     * @param field The name of the field
+     * @return The value of the field, or <code>false</code> if it was not stored
+     */
+    public boolean getBoolean(final String field) {
+      return Boolean.TRUE.equals(get(field));
+    }
+
+    /**
+     * Get a projected string field.
+     *
+     * @param field The name of the field
+     * @return The value of the field, or <code>null</code> if it was not stored
+     */
+    public String getString(final String field) {
+      final Object value = get(field);
+      return value == null ? null : value.toString();
+    }
+
+    private Object get(final String field) {
+      final Integer index = EntityProjection.this.indexByField.get(field);
+      if (index == null) {
+        throw new IllegalArgumentException("Field %s is not projected".formatted(field));
+      }
+
+      return this.values[index];
+    }
+  }
+}
@@ -1,8 +1,9 @@
 /* SPDX-License-Identifier: Apache-2.0 */
 package hu.bme.mit.ftsrg.chaincode.tpcc.data.entity;
 
-import hu.bme.mit.ftsrg.hypernate.entity.Entity;
+import hu.bme.mit.ftsrg.chaincode.tpcc.util.KeyEncoding;
 import hu.bme.mit.ftsrg.hypernate.entity.KeyPart;
+import java.time.Instant;
 import lombok.EqualsAndHashCode;
 import org.hyperledger.fabric.contract.annotation.DataType;
 import org.hyperledger.fabric.contract.annotation.Property;
@@ -10,7 +11,7 @@ import org.hyperledger.fabric.contract.annotation.Property;
 /** Essentially, the HISTORY table. */
 @EqualsAndHashCode
 @DataType
-public final class History implements Entity {
+public final class History implements TPCCEntity {
 
   /** The customer ID. Primary key. */
   @KeyPart
@@ -27,6 +28,15 @@ public final class History implements Entity {
   @Property(schema = {"minimum", "0"})
   private final int h_c_w_id;
 
+  /**
+   * The timestamp of the payment's transaction, encoded by {@link KeyEncoding#encode(Instant)} (so
+   * the customer's history is in chronological key order). Primary key.
+   */
+  @KeyPart @Property private final String h_tx_ts;
+
+  /** The ID of the payment's transaction. Primary key. */
+  @KeyPart @Property private final String h_tx_id;
+
   /** The district ID. */
   @Property(schema = {"minimum", "0"})
   private int h_d_id;
@@ -49,12 +59,16 @@ public final class History implements Entity {
     this.h_c_id = -1;
     this.h_c_d_id = -1;
     this.h_c_w_id = -1;
+    this.h_tx_ts = "";
+    this.h_tx_id = "";
   }
 
   public History(
       final int c_id,
       final int c_d_id,
       final int c_w_id,
+      final String tx_ts,
+      final String tx_id,
       final int d_id,
       final int w_id,
       final String date,
@@ -63,6 +77,8 @@ public final class History implements Entity {
     this.h_c_id = c_id;
     this.h_c_d_id = c_d_id;
     this.h_c_w_id = c_w_id;
+    this.h_tx_ts = tx_ts;
+    this.h_tx_id = tx_id;
     this.h_d_id = d_id;
     this.h_w_id = w_id;
     this.h_date = date;
@@ -82,6 +98,14 @@ public final class History implements Entity {
     return h_c_w_id;
   }
 
+  public String getH_tx_ts() {
+    return h_tx_ts;
+  }
+
+  public String getH_tx_id() {
+    return h_tx_id;
+  }
+
   public int getH_d_id() {
     return h_d_id;
   }
@@ -131,6 +155,8 @@ public final class History implements Entity {
     private int c_id;
     private int c_d_id;
     private int c_w_id;
+    private String tx_ts = "";
+    private String tx_id = "";
     private int d_id;
     private int w_id;
     private String date;
@@ -154,6 +180,16 @@ public final class History implements Entity {
       return this;
     }
 
+    public HistoryBuilder tx_ts(final String tx_ts) {
+      this.tx_ts = tx_ts;
+      return this;
+    }
+
+    public HistoryBuilder tx_id(final String tx_id) {
+      this.tx_id = tx_id;
+      return this;
+    }
+
     public HistoryBuilder d_id(final int d_id) {
       this.d_id = d_id;
       return this;
@@ -179,6 +215,12 @@ public final class History implements Entity {
       return this;
     }
 
+    public HistoryBuilder fromTransaction(final String txId, final Instant txTimestamp) {
+      this.tx_ts = KeyEncoding.encode(txTimestamp);
+      this.tx_id = txId;
+      return this;
+    }
+
     public HistoryBuilder fromCustomer(final Customer customer) {
       this.c_id = customer.getC_id();
       this.c_d_id = customer.getC_d_id();
@@ -191,6 +233,8 @@ public final class History implements Entity {
           this.c_id,
           this.c_d_id,
           this.c_w_id,
+          this.tx_ts,
+          this.tx_id,
           this.d_id,
           this.w_id,
           this.date,
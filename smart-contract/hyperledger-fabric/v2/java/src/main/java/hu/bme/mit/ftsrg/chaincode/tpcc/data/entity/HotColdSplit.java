@@ -0,0 +1,117 @@
+/* SPDX-License-Identifier: Apache-2.0 */
+package hu.bme.mit.ftsrg.chaincode.tpcc.data.entity;
+
+import hu.bme.mit.ftsrg.chaincode.tpcc.util.Config;
+import hu.bme.mit.ftsrg.hypernate.entity.SerializationException;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Vertical partitioning of an entity into its frequently updated ("hot") and its rarely changed
+ * ("cold") fields.
+ *
+ * <p>New-Order updates four counters of each STOCK and Payment updates four counters of the
+ * CUSTOMER, but both rewrite the entire value, including the long S_DIST_xx, S_DATA and C_DATA
+ * strings. When the <code>tpcc.storage.hotCold</code> setting is on, these entities are stored as
+ * two ledger entries instead: the hot fields under the entity's own key, and the cold fields (key
+ * parts included) under the same key with the object type suffixed with {@link #COLD_SUFFIX}. A
+ * transaction that only changes the hot fields then writes only the small hot entry.
+ *
+ * <p>Both parts are stored in the binary encoding of {@link BinaryEntityCodec}. A value stored as a
+ * whole (i.e., without a cold part) is still readable, so the setting can be turned on for a
+ * populated ledger; turning it off again requires reloading the ledger.
+ */
+public final class HotColdSplit {
+
+  /** Whether hot/cold partitioning is on (<code>tpcc.storage.hotCold</code>). */
+  public static final boolean ENABLED = Config.getBoolean("tpcc.storage.hotCold", false);
+
+  /** Suffix of the object type of cold parts. */
+  public static final String COLD_SUFFIX = "_COLD";
+
+  private static final Map<String, HotColdSplit> splitsByType =
+      Map.of(
+          new Stock().getType(),
+          new HotColdSplit(
+              Stock.class,
+              Stock::new,
+              Set.of("s_quantity", "s_ytd", "s_order_cnt", "s_remote_cnt")),
+          new Customer().getType(),
+          new HotColdSplit(
+              Customer.class,
+              Customer::new,
+              Set.of("c_balance", "c_ytd_payment", "c_payment_cnt", "c_delivery_cnt")));
+
+  private final Supplier<? extends TPCCEntity> factory;
+  private final BinaryEntityCodec.Schema hotSchema;
+  private final BinaryEntityCodec.Schema coldSchema;
+
+  private HotColdSplit(
+      final Class<? extends TPCCEntity> clazz,
+      final Supplier<? extends TPCCEntity> factory,
+      final Set<String> hotFields) {
+    this.factory = factory;
+    this.hotSchema = new BinaryEntityCodec.Schema(clazz, f -> hotFields.contains(f.getName()));
+    this.coldSchema = new BinaryEntityCodec.Schema(clazz, f -> !hotFields.contains(f.getName()));
+  }
+
+  /**
+   * Get the partitioning of an object type.
+   *
+   * @param type The object type
+   * @return The partitioning of the type, or <code>null</code> if the type is stored as a whole
+   */
+  public static HotColdSplit ofType(final String type) {
+    return splitsByType.get(type);
+  }
+
+  /**
+   * Split a stored value into its hot and cold parts.
+   *
+   * @param value The value of the whole entity (in any encoding)
+   * @return The parts of the value
+   * @throws SerializationException if the value is malformed
+   */
+  public Parts split(final byte[] value) throws SerializationException {
+    final TPCCEntity entity = this.factory.get();
+    entity.fromBuffer(value);
+    return new Parts(
+        BinaryEntityCodec.encode(entity, this.hotSchema),
+        BinaryEntityCodec.encode(entity, this.coldSchema));
+  }
+
+  /**
+   * Join the hot and cold parts of an entity.
+   *
+   * @param parts The stored parts
+   * @return The value of the whole entity, in the configured encoding
+   * @throws SerializationException if a part is malformed
+   */
+  public byte[] join(final Parts parts) throws SerializationException {
+    final TPCCEntity entity = this.factory.get();
+    BinaryEntityCodec.decode(parts.getHot(), entity, this.hotSchema);
+    BinaryEntityCodec.decode(parts.getCold(), entity, this.coldSchema);
+    return entity.toBuffer();
+  }
+
+  /** The hot and cold parts of an entity. */
+  public static final class Parts {
+
+    private final byte[] hot;
+    private final byte[] cold;
+
+    public Parts(final byte[] hot, final byte[] cold) {
+      this.hot = hot;
+      this.cold = cold;
+    }
+
+    public byte[] getHot() {
+      return this.hot;
+    }
+
+    public byte[] getCold() {
+      return this.cold;
+    }
+  }
+}
@@ -1,7 +1,6 @@
 /* SPDX-License-Identifier: Apache-2.0 */
 package hu.bme.mit.ftsrg.chaincode.tpcc.data.entity;
 
-import hu.bme.mit.ftsrg.hypernate.entity.Entity;
 import hu.bme.mit.ftsrg.hypernate.entity.KeyPart;
 import lombok.EqualsAndHashCode;
 import org.hyperledger.fabric.contract.annotation.DataType;
@@ -10,7 +9,7 @@ import org.hyperledger.fabric.contract.annotation.Property;
 /** Essentially, the ITEM table. */
 @EqualsAndHashCode
 @DataType
-public final class Item implements Entity {
+public final class Item implements TPCCEntity {
 
   /** The ID of the item. Primary key. */
   @KeyPart
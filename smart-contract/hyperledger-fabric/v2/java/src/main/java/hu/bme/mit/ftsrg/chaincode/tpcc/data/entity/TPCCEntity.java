@@ -0,0 +1,34 @@
+/* SPDX-License-Identifier: Apache-2.0 */
+package hu.bme.mit.ftsrg.chaincode.tpcc.data.entity;
+
+import hu.bme.mit.ftsrg.hypernate.entity.Entity;
+import hu.bme.mit.ftsrg.hypernate.entity.SerializationException;
+
+/**
+ * Common interface of the TPC-C entities.
+ *
+ * <p>When the <code>tpcc.codec</code> setting is <code>binary</code>, entities are stored in the
+ * compact encoding of {@link BinaryEntityCodec} instead of JSON, which repeats every field name and
+ * stores numbers as text. Both encodings are always readable, so the setting can be changed on a
+ * populated ledger.
+ */
+public interface TPCCEntity extends Entity {
+
+  @Override
+  default byte[] toBuffer() throws SerializationException {
+    if (!BinaryEntityCodec.WRITE_BINARY) {
+      return Entity.super.toBuffer();
+    }
+
+    return BinaryEntityCodec.encode(this);
+  }
+
+  @Override
+  default void fromBuffer(final byte[] buffer) throws SerializationException {
+    if (BinaryEntityCodec.isBinary(buffer)) {
+      BinaryEntityCodec.decode(buffer, this);
+    } else {
+      Entity.super.fromBuffer(buffer);
+    }
+  }
+}
@@ -17,6 +17,9 @@ public final class DeliveredOrder {
   @Property(schema = {"minimum", "0"})
   private int o_id;
 
+  /* For reading the recorded results of deferred deliveries */
+  DeliveredOrder() {}
+
   public DeliveredOrder(final int d_id, final int o_id) {
     this.d_id = d_id;
     this.o_id = o_id;
@@ -0,0 +1,57 @@
+/* SPDX-License-Identifier: Apache-2.0 */
+package hu.bme.mit.ftsrg.chaincode.tpcc.data.input;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.util.List;
+import lombok.EqualsAndHashCode;
+
+/**
+ * A batch of table rows to load.
+ *
+ * <p>The batches are generated and sent by <code>workload/caliper/load.js</code>.
+ *
+ * <p>Not a {@link org.hyperledger.fabric.contract.annotation.DataType DataType}: the rows of the
+ * different tables have different shapes, so they are kept as JSON objects until the table of each
+ * is known.
+ */
+@EqualsAndHashCode
+public final class CreateEntriesInput {
+
+  /** The rows to load, in order. */
+  private List<Entry> entries;
+
+  public List<Entry> getEntries() {
+    return entries;
+  }
+
+  public void setEntries(final List<Entry> entries) {
+    this.entries = entries;
+  }
+
+  /** A single table row. */
+  @EqualsAndHashCode
+  public static final class Entry {
+
+    /** The name of the table (e.g., <code>ORDER_LINE</code>). */
+    private String table;
+
+    /** The columns of the row, named like the fields of the table's entity. */
+    private ObjectNode data;
+
+    public String getTable() {
+      return table;
+    }
+
+    public void setTable(final String table) {
+      this.table = table;
+    }
+
+    public ObjectNode getData() {
+      return data;
+    }
+
+    public void setData(final ObjectNode data) {
+      this.data = data;
+    }
+  }
+}
@@ -0,0 +1,35 @@
+/* SPDX-License-Identifier: Apache-2.0 */
+package hu.bme.mit.ftsrg.chaincode.tpcc.data.input;
+
+import lombok.EqualsAndHashCode;
+import org.hyperledger.fabric.contract.annotation.DataType;
+import org.hyperledger.fabric.contract.annotation.Property;
+
+@EqualsAndHashCode
+@DataType
+public final class DeliverInput {
+
+  /** The warehouse ID. */
+  @Property(schema = {"minimum", "0"})
+  private int w_id;
+
+  /** The ID of the district whose oldest queued delivery to execute. */
+  @Property(schema = {"minimum", "0"})
+  private int d_id;
+
+  public int getW_id() {
+    return w_id;
+  }
+
+  public void setW_id(final int w_id) {
+    this.w_id = w_id;
+  }
+
+  public int getD_id() {
+    return d_id;
+  }
+
+  public void setD_id(final int d_id) {
+    this.d_id = d_id;
+  }
+}
@@ -0,0 +1,106 @@
+/* SPDX-License-Identifier: Apache-2.0 */
+package hu.bme.mit.ftsrg.chaincode.tpcc.data.input;
+
+import lombok.EqualsAndHashCode;
+import org.hyperledger.fabric.contract.annotation.DataType;
+import org.hyperledger.fabric.contract.annotation.Property;
+
+/** A chunk of the initial population to generate from a seed. */
+@EqualsAndHashCode
+@DataType
+public final class GenerateEntriesInput {
+
+  /** The seed of the population. */
+  @Property private long seed;
+
+  /** The number of warehouses in the population. */
+  @Property(schema = {"minimum", "1"})
+  private int warehouses;
+
+  /** The factor to divide the cardinalities of the other tables by. */
+  @Property(schema = {"minimum", "1"})
+  private int scale_factor;
+
+  /** The table of the chunk (ITEM, WAREHOUSE, DISTRICT, CUSTOMER, ORDERS or STOCK). */
+  @Property private String table;
+
+  /** The warehouse ID of the chunk. */
+  @Property(schema = {"minimum", "0"})
+  private int w_id;
+
+  /** The district ID of the chunk. */
+  @Property(schema = {"minimum", "0"})
+  private int d_id;
+
+  /** The first row ID of the chunk. */
+  @Property(schema = {"minimum", "0"})
+  private int first;
+
+  /** The number of row IDs in the chunk. */
+  @Property(schema = {"minimum", "0"})
+  private int count;
+
+  public long getSeed() {
+    return seed;
+  }
+
+  public void setSeed(final long seed) {
+    this.seed = seed;
+  }
+
+  public int getWarehouses() {
+    return warehouses;
+  }
+
+  public void setWarehouses(final int warehouses) {
+    this.warehouses = warehouses;
+  }
+
+  public int getScale_factor() {
+    return scale_factor;
+  }
+
+  public void setScale_factor(final int scale_factor) {
+    this.scale_factor = scale_factor;
+  }
+
+  public String getTable() {
+    return table;
+  }
+
+  public void setTable(final String table) {
+    this.table = table;
+  }
+
+  public int getW_id() {
+    return w_id;
+  }
+
+  public void setW_id(final int w_id) {
+    this.w_id = w_id;
+  }
+
+  public int getD_id() {
+    return d_id;
+  }
+
+  public void setD_id(final int d_id) {
+    this.d_id = d_id;
+  }
+
+  public int getFirst() {
+    return first;
+  }
+
+  public void setFirst(final int first) {
+    this.first = first;
+  }
+
+  public int getCount() {
+    return count;
+  }
+
+  public void setCount(final int count) {
+    this.count = count;
+  }
+}
@@ -20,15 +20,29 @@ public final class DeliveryOutput {
   @Property(schema = {"minimum", "0"})
   private int skipped;
 
+  /** The ID of the deferred Delivery the output belongs to (see DeliveryQueue), if deferred. */
+  @Property private String job_id;
+
+  /** The number of districts whose deferred delivery has not been executed yet. */
+  @Property(schema = {"minimum", "0"})
+  private int pending;
+
+  /* For reading the recorded results of deferred deliveries */
+  DeliveryOutput() {}
+
   public DeliveryOutput(
       final int w_id,
       final int o_carrier_id,
       final List<DeliveredOrder> deliveredOrders,
-      final int skipped) {
+      final int skipped,
+      final String job_id,
+      final int pending) {
     this.w_id = w_id;
     this.o_carrier_id = o_carrier_id;
     this.delivered = deliveredOrders;
     this.skipped = skipped;
+    this.job_id = job_id;
+    this.pending = pending;
   }
 
   public int getW_id() {
@@ -63,6 +77,22 @@ public final class DeliveryOutput {
     this.skipped = skipped;
   }
 
+  public String getJob_id() {
+    return job_id;
+  }
+
+  public void setJob_id(final String job_id) {
+    this.job_id = job_id;
+  }
+
+  public int getPending() {
+    return pending;
+  }
+
+  public void setPending(final int pending) {
+    this.pending = pending;
+  }
+
   public static DeliveryOutputBuilder builder() {
     return new DeliveryOutputBuilder();
   }
@@ -72,6 +102,8 @@ public final class DeliveryOutput {
     private int o_carrier_id;
     private List<DeliveredOrder> delivered;
     private int skipped;
+    private String job_id;
+    private int pending;
 
     DeliveryOutputBuilder() {}
 
@@ -95,8 +127,19 @@ public final class DeliveryOutput {
       return this;
     }
 
+    public DeliveryOutputBuilder job_id(final String job_id) {
+      this.job_id = job_id;
+      return this;
+    }
+
+    public DeliveryOutputBuilder pending(final int pending) {
+      this.pending = pending;
+      return this;
+    }
+
     public DeliveryOutput build() {
-      return new DeliveryOutput(this.w_id, this.o_carrier_id, this.delivered, this.skipped);
+      return new DeliveryOutput(
+          this.w_id, this.o_carrier_id, this.delivered, this.skipped, this.job_id, this.pending);
     }
   }
 }
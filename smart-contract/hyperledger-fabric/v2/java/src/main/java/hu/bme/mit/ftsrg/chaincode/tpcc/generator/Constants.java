@@ -0,0 +1,89 @@
+/* SPDX-License-Identifier: Apache-2.0 */
+package hu.bme.mit.ftsrg.chaincode.tpcc.generator;
+
+import lombok.experimental.UtilityClass;
+
+/** The constants of the population rules [TPC-C 4.3.3.1], as in the Caliper workload. */
+@UtilityClass
+final class Constants {
+
+  static final int MONEY_DECIMALS = 2;
+
+  /* Item */
+  static final int NUM_ITEMS = 100_000;
+  static final int MIN_IM = 1;
+  static final int MAX_IM = 10_000;
+  static final double MIN_PRICE = 1.00;
+  static final double MAX_PRICE = 100.00;
+  static final int MIN_I_NAME = 14;
+  static final int MAX_I_NAME = 24;
+  static final int MIN_I_DATA = 26;
+  static final int MAX_I_DATA = 50;
+
+  /* Warehouse */
+  static final double MIN_TAX = 0;
+  static final double MAX_TAX = 0.2000;
+  static final int TAX_DECIMALS = 4;
+  static final double INITIAL_W_YTD = 300_000.00;
+  static final int MIN_NAME = 6;
+  static final int MAX_NAME = 10;
+  static final int MIN_STREET = 10;
+  static final int MAX_STREET = 20;
+  static final int MIN_CITY = 10;
+  static final int MAX_CITY = 20;
+  static final int STATE = 2;
+  static final int ZIP_LENGTH = 9;
+  static final String ZIP_SUFFIX = "11111";
+
+  /* Stock */
+  static final int MIN_QUANTITY = 10;
+  static final int MAX_QUANTITY = 100;
+  static final int DIST = 24;
+
+  /* District */
+  static final int DISTRICTS_PER_WAREHOUSE = 10;
+  static final double INITIAL_D_YTD = 30_000.00;
+
+  /* Customer */
+  static final int CUSTOMERS_PER_DISTRICT = 3000;
+  static final int INITIAL_CREDIT_LIM = 50_000;
+  static final double MIN_DISCOUNT = 0.0000;
+  static final double MAX_DISCOUNT = 0.5000;
+  static final int DISCOUNT_DECIMALS = 4;
+  static final double INITIAL_BALANCE = -10.00;
+  static final double INITIAL_YTD_PAYMENT = 10.00;
+  static final int INITIAL_PAYMENT_CNT = 1;
+  static final int INITIAL_DELIVERY_CNT = 0;
+  static final int MIN_FIRST = 6;
+  static final int MAX_FIRST = 10;
+  static final String MIDDLE = "OE";
+  static final int PHONE = 16;
+  static final int MIN_C_DATA = 300;
+  static final int MAX_C_DATA = 500;
+  static final String GOOD_CREDIT = "GC";
+  static final String BAD_CREDIT = "BC";
+
+  /* Order */
+  static final int MIN_CARRIER_ID = 1;
+  static final int MAX_CARRIER_ID = 10;
+  static final int NULL_CARRIER_ID = 0;
+  static final int MIN_OL_CNT = 5;
+  static final int MAX_OL_CNT = 15;
+  static final int INITIAL_ALL_LOCAL = 1;
+  static final int MAX_OL_QUANTITY = 10;
+
+  /* Order line */
+  static final int INITIAL_QUANTITY = 5;
+  static final double MIN_AMOUNT = 0.01;
+
+  /* History */
+  static final int MIN_DATA = 12;
+  static final int MAX_DATA = 24;
+  static final double INITIAL_AMOUNT = 10.00;
+
+  /* New order */
+  static final int INITIAL_NEW_ORDERS_PER_DISTRICT = 900;
+
+  /* Marks "brand" items and stock in I_DATA and S_DATA */
+  static final String ORIGINAL_STRING = "ORIGINAL";
+}
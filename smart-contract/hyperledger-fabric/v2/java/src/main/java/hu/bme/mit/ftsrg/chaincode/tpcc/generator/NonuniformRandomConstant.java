@@ -0,0 +1,42 @@
+/* SPDX-License-Identifier: Apache-2.0 */
+package hu.bme.mit.ftsrg.chaincode.tpcc.generator;
+
+/** The run-time constants <i>C</i> of the NURand function [TPC-C 2.1.6]. */
+public final class NonuniformRandomConstant {
+
+  private final int cLast;
+  private final int cId;
+  private final int orderLineItemId;
+
+  public NonuniformRandomConstant(final int cLast, final int cId, final int orderLineItemId) {
+    this.cLast = cLast;
+    this.cId = cId;
+    this.orderLineItemId = orderLineItemId;
+  }
+
+  /**
+   * Create random constants for populating the database.
+   *
+   * @param random The generator to draw the constants with
+   * @return The constants
+   */
+  public static NonuniformRandomConstant makeForLoad(final UniformRandomGenerator random) {
+    return new NonuniformRandomConstant(
+        random.number(0, 255), random.number(0, 1023), random.number(0, 8191));
+  }
+
+  /** The constant of C_LAST (A = 255). */
+  public int getCLast() {
+    return this.cLast;
+  }
+
+  /** The constant of C_ID (A = 1023). */
+  public int getCId() {
+    return this.cId;
+  }
+
+  /** The constant of OL_I_ID (A = 8191). */
+  public int getOrderLineItemId() {
+    return this.orderLineItemId;
+  }
+}
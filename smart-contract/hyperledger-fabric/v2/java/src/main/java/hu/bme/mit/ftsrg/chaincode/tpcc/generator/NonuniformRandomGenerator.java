@@ -0,0 +1,59 @@
+/* SPDX-License-Identifier: Apache-2.0 */
+package hu.bme.mit.ftsrg.chaincode.tpcc.generator;
+
+/** Non-uniformly distributed random values (NURand) and customer last names [TPC-C 2.1.6]. */
+public final class NonuniformRandomGenerator {
+
+  private static final String[] SYLLABLES = {
+    "BAR", "OUGHT", "ABLE", "PRI", "PRES", "ESE", "ANTI", "CALLY", "ATION", "EING"
+  };
+
+  private final NonuniformRandomConstant constant;
+  private final UniformRandomGenerator random;
+
+  public NonuniformRandomGenerator(
+      final NonuniformRandomConstant constant, final UniformRandomGenerator random) {
+    this.constant = constant;
+    this.random = random;
+  }
+
+  /**
+   * Draw NURand(A, x, y) = (((random(0, A) | random(x, y)) + C) % (y - x + 1)) + x.
+   *
+   * @param a The constant A (255, 1023 or 8191)
+   * @param x The lower bound (inclusive)
+   * @param y The upper bound (inclusive)
+   * @return A non-uniformly distributed random integer within the bounds
+   * @throws IllegalArgumentException if A is none of the supported values
+   */
+  public int nurand(final int a, final int x, final int y) {
+    final int c =
+        switch (a) {
+          case 255 -> this.constant.getCLast();
+          case 1023 -> this.constant.getCId();
+          case 8191 -> this.constant.getOrderLineItemId();
+          default -> throw new IllegalArgumentException("Unsupported A value: " + a);
+        };
+    return (((this.random.number(0, a) | this.random.number(x, y)) + c) % (y - x + 1)) + x;
+  }
+
+  /**
+   * Make the last name of a number [TPC-C 4.3.2.3].
+   *
+   * @param number A number from 0 to 999
+   * @return The concatenated syllables of the number's digits
+   */
+  public static String makeLastName(final int number) {
+    return SYLLABLES[number / 100] + SYLLABLES[number / 10 % 10] + SYLLABLES[number % 10];
+  }
+
+  /**
+   * Make the last name of a NURand(255, 0, 999) number.
+   *
+   * @param maxCustomerId The number of customers per district (bounding the number if fewer)
+   * @return A non-uniformly distributed random last name
+   */
+  public String makeRandomLastName(final int maxCustomerId) {
+    return makeLastName(nurand(255, 0, Math.min(999, maxCustomerId - 1)));
+  }
+}
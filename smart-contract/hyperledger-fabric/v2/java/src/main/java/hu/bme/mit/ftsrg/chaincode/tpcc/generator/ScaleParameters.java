@@ -0,0 +1,81 @@
+/* SPDX-License-Identifier: Apache-2.0 */
+package hu.bme.mit.ftsrg.chaincode.tpcc.generator;
+
+/**
+ * The cardinalities of the generated population [TPC-C 1.4.1].
+ *
+ * <p>Port of <code>ScaleParameters</code> of the Caliper workload: a scale factor greater than 1
+ * shrinks every table except WAREHOUSE proportionally, for test networks that cannot hold the full
+ * population.
+ */
+public final class ScaleParameters {
+
+  private final int items;
+  private final int warehouses;
+  private final int districtsPerWarehouse;
+  private final int customersPerDistrict;
+  private final int newOrdersPerDistrict;
+
+  public ScaleParameters(
+      final int items,
+      final int warehouses,
+      final int districtsPerWarehouse,
+      final int customersPerDistrict,
+      final int newOrdersPerDistrict) {
+    this.items = items;
+    this.warehouses = warehouses;
+    this.districtsPerWarehouse = districtsPerWarehouse;
+    this.customersPerDistrict = customersPerDistrict;
+    this.newOrdersPerDistrict = newOrdersPerDistrict;
+  }
+
+  /**
+   * Create the scale parameters of a number of warehouses and a scale factor.
+   *
+   * @param warehouses The number of warehouses
+   * @param scaleFactor The factor to divide the other cardinalities by (1 for the full population)
+   * @return The scale parameters
+   * @throws IllegalArgumentException if there are no warehouses or the scale factor is less than 1
+   */
+  public static ScaleParameters makeWithScaleFactor(final int warehouses, final int scaleFactor) {
+    if (warehouses < 1 || scaleFactor < 1) {
+      throw new IllegalArgumentException(
+          "Invalid scale: %d warehouses, scale factor %d".formatted(warehouses, scaleFactor));
+    }
+
+    return new ScaleParameters(
+        Math.max(Constants.NUM_ITEMS / scaleFactor, 1),
+        warehouses,
+        Math.max(Constants.DISTRICTS_PER_WAREHOUSE / scaleFactor, 1),
+        Math.max(Constants.CUSTOMERS_PER_DISTRICT / scaleFactor, 1),
+        Math.max(Constants.INITIAL_NEW_ORDERS_PER_DISTRICT / scaleFactor, 0));
+  }
+
+  public int getItems() {
+    return this.items;
+  }
+
+  public int getWarehouses() {
+    return this.warehouses;
+  }
+
+  public int getStartingWarehouse() {
+    return 1;
+  }
+
+  public int getEndingWarehouse() {
+    return this.warehouses;
+  }
+
+  public int getDistrictsPerWarehouse() {
+    return this.districtsPerWarehouse;
+  }
+
+  public int getCustomersPerDistrict() {
+    return this.customersPerDistrict;
+  }
+
+  public int getNewOrdersPerDistrict() {
+    return this.newOrdersPerDistrict;
+  }
+}
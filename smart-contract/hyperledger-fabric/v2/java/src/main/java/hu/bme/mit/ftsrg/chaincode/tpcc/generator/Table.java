@@ -0,0 +1,32 @@
+/* SPDX-License-Identifier: Apache-2.0 */
+package hu.bme.mit.ftsrg.chaincode.tpcc.generator;
+
+import hu.bme.mit.ftsrg.chaincode.tpcc.data.entity.*;
+
+/** The tables of the TPC-C database [TPC-C 1.3], named as by the workload's loader. */
+public enum Table {
+  ITEM(Item.class),
+  WAREHOUSE(Warehouse.class),
+  DISTRICT(District.class),
+  CUSTOMER(Customer.class),
+  HISTORY(History.class),
+  ORDERS(Order.class),
+  NEW_ORDER(NewOrder.class),
+  ORDER_LINE(OrderLine.class),
+  STOCK(Stock.class);
+
+  private final Class<? extends TPCCEntity> entityClass;
+
+  Table(final Class<? extends TPCCEntity> entityClass) {
+    this.entityClass = entityClass;
+  }
+
+  /**
+   * Get the entity class storing the rows of the table.
+   *
+   * @return The entity class of the table
+   */
+  public Class<? extends TPCCEntity> getEntityClass() {
+    return this.entityClass;
+  }
+}
@@ -0,0 +1,406 @@
+/* SPDX-License-Identifier: Apache-2.0 */
+package hu.bme.mit.ftsrg.chaincode.tpcc.generator;
+
+import hu.bme.mit.ftsrg.chaincode.tpcc.data.entity.*;
+import hu.bme.mit.ftsrg.hypernate.entity.SerializationException;
+import java.time.Instant;
+import java.util.Set;
+
+/**
+ * Deterministic generator of the initial database population [TPC-C 4.3.3.1].
+ *
+ * <p>Port of <code>TableEntryGenerator</code> of the Caliper workload, with the same rules and
+ * constants, but split into chunks that can be generated independently of each other (see {@link
+ * #generate(Table, int, int, int, int, Sink)}). Every row is drawn from a random stream of its own,
+ * seeded by the population seed and the row's key, and the few choices that span rows (the 10% of
+ * "original" items and stock, the 10% of customers with bad credit, and the permutation of
+ * customers placing the initial orders) from a stream seeded by their scope. The population is thus
+ * a function of the seed alone, however it is split into chunks, and every endorsing peer generates
+ * the same rows.
+ *
+ * <p>The only values not derived from the seed are the dates, which are set to the time of loading,
+ * and the transaction key parts of the HISTORY rows.
+ */
+public final class TableEntryGenerator {
+
+  private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+  private final ScaleParameters scale;
+  private final long seed;
+  private final String date;
+  private final History historyTxKeyParts;
+  private final NonuniformRandomConstant loadConstant;
+
+  /**
+   * Create a generator.
+   *
+   * @param scale The cardinalities of the population
+   * @param seed The seed of the population
+   * @param loadTime The time of loading, used as the value of the date fields
+   * @param loadId The ID of the loading transaction, used as a key part of the HISTORY rows
+   */
+  public TableEntryGenerator(
+      final ScaleParameters scale, final long seed, final Instant loadTime, final String loadId) {
+    this.scale = scale;
+    this.seed = seed;
+    this.date = loadTime.toString();
+    this.historyTxKeyParts = History.builder().fromTransaction(loadId, loadTime).build();
+    this.loadConstant = NonuniformRandomConstant.makeForLoad(new UniformRandomGenerator(seed));
+  }
+
+  /**
+   * Generate a chunk of the population.
+   *
+   * <p>The chunks are:
+   *
+   * <ul>
+   *   <li><code>ITEM</code>: the items with I_ID in [first, first + count);
+   *   <li><code>WAREHOUSE</code>: the warehouse with W_ID = w_id;
+   *   <li><code>DISTRICT</code>: the district with (D_W_ID, D_ID) = (w_id, d_id);
+   *   <li><code>CUSTOMER</code>: the customers of a district with C_ID in [first, first + count),
+   *       each followed by its HISTORY row;
+   *   <li><code>ORDERS</code>: the orders of a district with O_ID in [first, first + count), each
+   *       followed by its ORDER-LINE rows and, for the undelivered ones, its NEW-ORDER row;
+   *   <li><code>STOCK</code>: the stock of a warehouse with S_I_ID in [first, first + count).
+   * </ul>
+   *
+   * <p>The parameters not listed for a table are ignored.
+   *
+   * @param table The table of the chunk
+   * @param w_id The warehouse of the chunk
+   * @param d_id The district of the chunk
+   * @param first The first ID of the chunk
+   * @param count The number of IDs in the chunk
+   * @param sink The consumer of the generated rows
+   * @throws IllegalArgumentException if the chunk is out of the population's bounds, or the rows of
+   *     the table are generated with those of another table
+   * @throws SerializationException if the sink fails to serialize a row
+   */
+  public void generate(
+      final Table table,
+      final int w_id,
+      final int d_id,
+      final int first,
+      final int count,
+      final Sink sink)
+      throws SerializationException {
+    switch (table) {
+      case ITEM -> {
+        checkRange("I_ID", first, count, this.scale.getItems());
+        final Set<Integer> originals = originalRows(Table.ITEM, 0);
+        for (int i_id = first; i_id < first + count; ++i_id) {
+          sink.accept(Table.ITEM, item(i_id, originals.contains(i_id)));
+        }
+      }
+      case WAREHOUSE -> {
+        checkWarehouse(w_id);
+        sink.accept(Table.WAREHOUSE, warehouse(w_id));
+      }
+      case DISTRICT -> {
+        checkDistrict(w_id, d_id);
+        sink.accept(Table.DISTRICT, district(w_id, d_id));
+      }
+      case CUSTOMER -> {
+        checkDistrict(w_id, d_id);
+        checkRange("C_ID", first, count, this.scale.getCustomersPerDistrict());
+        final Set<Integer> badCredit =
+            random(Table.CUSTOMER, w_id, d_id, 0)
+                .selectUniqueIds(
+                    this.scale.getCustomersPerDistrict() / 10,
+                    1,
+                    this.scale.getCustomersPerDistrict());
+        for (int c_id = first; c_id < first + count; ++c_id) {
+          final UniformRandomGenerator random = random(Table.CUSTOMER, w_id, d_id, c_id);
+          final Customer customer = customer(random, w_id, d_id, c_id, badCredit.contains(c_id));
+          sink.accept(Table.CUSTOMER, customer);
+          sink.accept(Table.HISTORY, history(random, customer));
+        }
+      }
+      case ORDERS -> {
+        checkDistrict(w_id, d_id);
+        checkRange("O_ID", first, count, this.scale.getCustomersPerDistrict());
+        final int[] customerIds = customerPermutation(w_id, d_id);
+        for (int o_id = first; o_id < first + count; ++o_id) {
+          order(w_id, d_id, o_id, customerIds[o_id - 1], sink);
+        }
+      }
+      case STOCK -> {
+        checkWarehouse(w_id);
+        checkRange("S_I_ID", first, count, this.scale.getItems());
+        final Set<Integer> originals = originalRows(Table.STOCK, w_id);
+        for (int i_id = first; i_id < first + count; ++i_id) {
+          sink.accept(Table.STOCK, stock(w_id, i_id, originals.contains(i_id)));
+        }
+      }
+      default ->
+          throw new IllegalArgumentException(
+              "%s rows are generated with their CUSTOMER or ORDERS rows".formatted(table));
+    }
+  }
+
+  private Item item(final int i_id, final boolean original) {
+    final UniformRandomGenerator random = random(Table.ITEM, 0, 0, i_id);
+    return Item.builder()
+        .id(i_id)
+        .im_id(random.number(Constants.MIN_IM, Constants.MAX_IM))
+        .name(random.astring(Constants.MIN_I_NAME, Constants.MAX_I_NAME))
+        .price(
+            random.fixedPoint(Constants.MONEY_DECIMALS, Constants.MIN_PRICE, Constants.MAX_PRICE))
+        .data(data(random, original))
+        .build();
+  }
+
+  private Warehouse warehouse(final int w_id) {
+    final UniformRandomGenerator random = random(Table.WAREHOUSE, w_id, 0, 0);
+    return Warehouse.builder()
+        .id(w_id)
+        .name(random.astring(Constants.MIN_NAME, Constants.MAX_NAME))
+        .street_1(random.astring(Constants.MIN_STREET, Constants.MAX_STREET))
+        .street_2(random.astring(Constants.MIN_STREET, Constants.MAX_STREET))
+        .city(random.astring(Constants.MIN_CITY, Constants.MAX_CITY))
+        .state(random.astring(Constants.STATE, Constants.STATE))
+        .zip(zip(random))
+        .tax(tax(random))
+        .ytd(Constants.INITIAL_W_YTD)
+        .build();
+  }
+
+  private District district(final int w_id, final int d_id) {
+    final UniformRandomGenerator random = random(Table.DISTRICT, w_id, d_id, 0);
+    return District.builder()
+        .id(d_id)
+        .w_id(w_id)
+        .name(random.astring(Constants.MIN_NAME, Constants.MAX_NAME))
+        .street_1(random.astring(Constants.MIN_STREET, Constants.MAX_STREET))
+        .street_2(random.astring(Constants.MIN_STREET, Constants.MAX_STREET))
+        .city(random.astring(Constants.MIN_CITY, Constants.MAX_CITY))
+        .state(random.astring(Constants.STATE, Constants.STATE))
+        .zip(zip(random))
+        .tax(tax(random))
+        .ytd(Constants.INITIAL_D_YTD)
+        .next_o_id(this.scale.getCustomersPerDistrict() + 1)
+        .build();
+  }
+
+  private Customer customer(
+      final UniformRandomGenerator random,
+      final int w_id,
+      final int d_id,
+      final int c_id,
+      final boolean badCredit) {
+    return Customer.builder()
+        .id(c_id)
+        .d_id(d_id)
+        .w_id(w_id)
+        .first(random.astring(Constants.MIN_FIRST, Constants.MAX_FIRST))
+        .middle(Constants.MIDDLE)
+        .last(
+            c_id <= 1000
+                ? NonuniformRandomGenerator.makeLastName(c_id - 1)
+                : new NonuniformRandomGenerator(this.loadConstant, random)
+                    .makeRandomLastName(Constants.CUSTOMERS_PER_DISTRICT))
+        .street_1(random.astring(Constants.MIN_STREET, Constants.MAX_STREET))
+        .street_2(random.astring(Constants.MIN_STREET, Constants.MAX_STREET))
+        .city(random.astring(Constants.MIN_CITY, Constants.MAX_CITY))
+        .state(random.astring(Constants.STATE, Constants.STATE))
+        .zip(zip(random))
+        .phone(random.nstring(Constants.PHONE, Constants.PHONE))
+        .since(this.date)
+        .credit(badCredit ? Constants.BAD_CREDIT : Constants.GOOD_CREDIT)
+        .credit_lim(Constants.INITIAL_CREDIT_LIM)
+        .discount(
+            random.fixedPoint(
+                Constants.DISCOUNT_DECIMALS, Constants.MIN_DISCOUNT, Constants.MAX_DISCOUNT))
+        .balance(Constants.INITIAL_BALANCE)
+        .ytd_payment(Constants.INITIAL_YTD_PAYMENT)
+        .payment_cnt(Constants.INITIAL_PAYMENT_CNT)
+        .delivery_cnt(Constants.INITIAL_DELIVERY_CNT)
+        .data(random.astring(Constants.MIN_C_DATA, Constants.MAX_C_DATA))
+        .build();
+  }
+
+  private History history(final UniformRandomGenerator random, final Customer customer) {
+    return History.builder()
+        .fromCustomer(customer)
+        .tx_ts(this.historyTxKeyParts.getH_tx_ts())
+        .tx_id(this.historyTxKeyParts.getH_tx_id())
+        .d_id(customer.getC_d_id())
+        .w_id(customer.getC_w_id())
+        .date(this.date)
+        .amount(Constants.INITIAL_AMOUNT)
+        .data(random.astring(Constants.MIN_DATA, Constants.MAX_DATA))
+        .build();
+  }
+
+  private void order(
+      final int w_id, final int d_id, final int o_id, final int c_id, final Sink sink)
+      throws SerializationException {
+    final UniformRandomGenerator random = random(Table.ORDERS, w_id, d_id, o_id);
+    final boolean undelivered =
+        o_id > this.scale.getCustomersPerDistrict() - this.scale.getNewOrdersPerDistrict();
+
+    final Order order =
+        Order.builder()
+            .id(o_id)
+            .d_id(d_id)
+            .w_id(w_id)
+            .c_id(c_id)
+            .entry_d(this.date)
+            .carrier_id(
+                undelivered
+                    ? Constants.NULL_CARRIER_ID
+                    : random.number(Constants.MIN_CARRIER_ID, Constants.MAX_CARRIER_ID))
+            .ol_cnt(random.number(Constants.MIN_OL_CNT, Constants.MAX_OL_CNT))
+            .all_local(Constants.INITIAL_ALL_LOCAL)
+            .build();
+    sink.accept(Table.ORDERS, order);
+
+    for (int ol_number = 1; ol_number <= order.getO_ol_cnt(); ++ol_number) {
+      /* 1% of the items are supplied by a remote warehouse */
+      int supply_w_id = w_id;
+      if (random.number(1, 100) == 1 && this.scale.getWarehouses() > 1) {
+        supply_w_id =
+            random.numberExcluding(
+                this.scale.getStartingWarehouse(), this.scale.getEndingWarehouse(), w_id);
+      }
+
+      sink.accept(
+          Table.ORDER_LINE,
+          OrderLine.builder()
+              .fromOrder(order)
+              .number(ol_number)
+              .i_id(random.number(1, this.scale.getItems()))
+              .supply_w_id(supply_w_id)
+              .delivery_d(undelivered ? null : this.date)
+              .quantity(Constants.INITIAL_QUANTITY)
+              .amount(
+                  undelivered
+                      ? random.fixedPoint(
+                          Constants.MONEY_DECIMALS,
+                          Constants.MIN_AMOUNT,
+                          Constants.MAX_PRICE * Constants.MAX_OL_QUANTITY)
+                      : 0.00)
+              .dist_info(random.astring(Constants.DIST, Constants.DIST))
+              .build());
+    }
+
+    if (undelivered) {
+      sink.accept(Table.NEW_ORDER, NewOrder.builder().o_id(o_id).d_id(d_id).w_id(w_id).build());
+    }
+  }
+
+  private Stock stock(final int w_id, final int i_id, final boolean original) {
+    final UniformRandomGenerator random = random(Table.STOCK, w_id, 0, i_id);
+    return Stock.builder()
+        .i_id(i_id)
+        .w_id(w_id)
+        .quantity(random.number(Constants.MIN_QUANTITY, Constants.MAX_QUANTITY))
+        .dist_01(random.astring(Constants.DIST, Constants.DIST))
+        .dist_02(random.astring(Constants.DIST, Constants.DIST))
+        .dist_03(random.astring(Constants.DIST, Constants.DIST))
+        .dist_04(random.astring(Constants.DIST, Constants.DIST))
+        .dist_05(random.astring(Constants.DIST, Constants.DIST))
+        .dist_06(random.astring(Constants.DIST, Constants.DIST))
+        .dist_07(random.astring(Constants.DIST, Constants.DIST))
+        .dist_08(random.astring(Constants.DIST, Constants.DIST))
+        .dist_09(random.astring(Constants.DIST, Constants.DIST))
+        .dist_10(random.astring(Constants.DIST, Constants.DIST))
+        .ytd(0)
+        .order_cnt(0)
+        .remote_cnt(0)
+        .data(data(random, original))
+        .build();
+  }
+
+  /* I_DATA and S_DATA; the "original" ones contain ORIGINAL at a random position */
+  private static String data(final UniformRandomGenerator random, final boolean original) {
+    final String data = random.astring(Constants.MIN_I_DATA, Constants.MAX_I_DATA);
+    if (!original) {
+      return data;
+    }
+
+    final int length = Constants.ORIGINAL_STRING.length();
+    final int position = random.number(0, data.length() - length);
+    return data.substring(0, position)
+        + Constants.ORIGINAL_STRING
+        + data.substring(position + length);
+  }
+
+  private static String zip(final UniformRandomGenerator random) {
+    final int length = Constants.ZIP_LENGTH - Constants.ZIP_SUFFIX.length();
+    return random.nstring(length, length) + Constants.ZIP_SUFFIX;
+  }
+
+  private static double tax(final UniformRandomGenerator random) {
+    return random.fixedPoint(Constants.TAX_DECIMALS, Constants.MIN_TAX, Constants.MAX_TAX);
+  }
+
+  private Set<Integer> originalRows(final Table table, final int w_id) {
+    return random(table, w_id, 0, 0)
+        .selectUniqueIds(this.scale.getItems() / 10, 1, this.scale.getItems());
+  }
+
+  /* The customers placing the orders O_ID = 1, 2, ... of a district [TPC-C 4.3.3.1] */
+  private int[] customerPermutation(final int w_id, final int d_id) {
+    final UniformRandomGenerator random = random(Table.ORDERS, w_id, d_id, 0);
+    final int[] customerIds = new int[this.scale.getCustomersPerDistrict()];
+    for (int i = 0; i < customerIds.length; ++i) {
+      customerIds[i] = i + 1;
+    }
+    for (int i = customerIds.length - 1; i > 0; --i) {
+      final int j = random.number(0, i);
+      final int swapped = customerIds[i];
+      customerIds[i] = customerIds[j];
+      customerIds[j] = swapped;
+    }
+    return customerIds;
+  }
+
+  /* Row IDs start at 1, so ID 0 is left for the streams of the choices spanning rows */
+  private UniformRandomGenerator random(
+      final Table table, final int w_id, final int d_id, final int id) {
+    long streamSeed = mix(this.seed + GOLDEN_GAMMA * (table.ordinal() + 1));
+    streamSeed = mix(streamSeed + GOLDEN_GAMMA * w_id);
+    streamSeed = mix(streamSeed + GOLDEN_GAMMA * d_id);
+    streamSeed = mix(streamSeed + GOLDEN_GAMMA * id);
+    return new UniformRandomGenerator(streamSeed);
+  }
+
+  /* The finalizer of SplitMix64 */
+  private static long mix(long z) {
+    z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+    z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+    return z ^ (z >>> 31);
+  }
+
+  private void checkWarehouse(final int w_id) {
+    checkRange("W_ID", w_id, 1, this.scale.getWarehouses());
+  }
+
+  private void checkDistrict(final int w_id, final int d_id) {
+    checkWarehouse(w_id);
+    checkRange("D_ID", d_id, 1, this.scale.getDistrictsPerWarehouse());
+  }
+
+  private static void checkRange(
+      final String name, final int first, final int count, final int max) {
+    if (first < 1 || count < 0 || first + count - 1 > max) {
+      throw new IllegalArgumentException(
+          "%s range [%d, %d] is out of [1, %d]".formatted(name, first, first + count - 1, max));
+    }
+  }
+
+  /** Consumer of the generated rows. */
+  @FunctionalInterface
+  public interface Sink {
+
+    /**
+     * Consume a generated row.
+     *
+     * @param table The table of the row
+     * @param row The row
+     * @throws SerializationException if the row cannot be serialized
+     */
+    void accept(Table table, TPCCEntity row) throws SerializationException;
+  }
+}
@@ -0,0 +1,109 @@
+/* SPDX-License-Identifier: Apache-2.0 */
+package hu.bme.mit.ftsrg.chaincode.tpcc.generator;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+/**
+ * Uniformly distributed random values [TPC-C 4.3.2].
+ *
+ * <p>Port of <code>UniformRandomGenerator</code> of the Caliper workload, backed by a seeded {@link
+ * SplittableRandom}, so the same seed always yields the same values. Unlike the original, ranges
+ * include their maximum, as the specification requires.
+ */
+public final class UniformRandomGenerator {
+
+  private final SplittableRandom random;
+
+  public UniformRandomGenerator(final long seed) {
+    this.random = new SplittableRandom(seed);
+  }
+
+  /**
+   * Draw an integer [TPC-C 4.3.2.5].
+   *
+   * @param minimum The lower bound (inclusive)
+   * @param maximum The upper bound (inclusive)
+   * @return A random integer within the bounds
+   */
+  public int number(final int minimum, final int maximum) {
+    return this.random.nextInt(minimum, maximum + 1);
+  }
+
+  /**
+   * Draw an integer other than a given one.
+   *
+   * @param minimum The lower bound (inclusive)
+   * @param maximum The upper bound (inclusive)
+   * @param excluding The value not to draw
+   * @return A random integer within the bounds, different from <code>excluding</code>
+   */
+  public int numberExcluding(final int minimum, final int maximum, final int excluding) {
+    final int number = number(minimum, maximum - 1);
+    return number >= excluding ? number + 1 : number;
+  }
+
+  /**
+   * Draw a decimal number with a fixed number of decimal places.
+   *
+   * @param decimalPlaces The number of decimal places
+   * @param minimum The lower bound (inclusive)
+   * @param maximum The upper bound (inclusive)
+   * @return A random decimal number within the bounds
+   */
+  public double fixedPoint(final int decimalPlaces, final double minimum, final double maximum) {
+    final double multiplier = Math.pow(10, decimalPlaces);
+    return number(
+            (int) Math.floor(minimum * multiplier + 0.5),
+            (int) Math.floor(maximum * multiplier + 0.5))
+        / multiplier;
+  }
+
+  /**
+   * Select distinct integers.
+   *
+   * @param count The number of integers to select
+   * @param minimum The lower bound (inclusive)
+   * @param maximum The upper bound (inclusive)
+   * @return The selected integers
+   */
+  public Set<Integer> selectUniqueIds(final int count, final int minimum, final int maximum) {
+    final Set<Integer> ids = new HashSet<>();
+    while (ids.size() < count) {
+      ids.add(number(minimum, maximum));
+    }
+    return ids;
+  }
+
+  /**
+   * Draw a random alphabetic string [TPC-C 4.3.2.2].
+   *
+   * @param minimumLength The minimum length (inclusive)
+   * @param maximumLength The maximum length (inclusive)
+   * @return A random string of lowercase letters
+   */
+  public String astring(final int minimumLength, final int maximumLength) {
+    return randomString(minimumLength, maximumLength, 'a', 26);
+  }
+
+  /**
+   * Draw a random numeric string [TPC-C 4.3.2.2].
+   *
+   * @param minimumLength The minimum length (inclusive)
+   * @param maximumLength The maximum length (inclusive)
+   * @return A random string of digits
+   */
+  public String nstring(final int minimumLength, final int maximumLength) {
+    return randomString(minimumLength, maximumLength, '0', 10);
+  }
+
+  private String randomString(
+      final int minimumLength, final int maximumLength, final char base, final int characters) {
+    final char[] chars = new char[number(minimumLength, maximumLength)];
+    for (int i = 0; i < chars.length; ++i) {
+      chars[i] = (char) (base + number(0, characters - 1));
+    }
+    return new String(chars);
+  }
+}
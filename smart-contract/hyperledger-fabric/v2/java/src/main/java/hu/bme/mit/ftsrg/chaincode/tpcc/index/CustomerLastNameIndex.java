@@ -0,0 +1,87 @@
+/* SPDX-License-Identifier: Apache-2.0 */
+package hu.bme.mit.ftsrg.chaincode.tpcc.index;
+
+import hu.bme.mit.ftsrg.chaincode.tpcc.data.entity.Customer;
+import hu.bme.mit.ftsrg.chaincode.tpcc.util.KeyEncoding;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.experimental.UtilityClass;
+import org.hyperledger.fabric.shim.ChaincodeStub;
+import org.hyperledger.fabric.shim.ledger.CompositeKey;
+import org.hyperledger.fabric.shim.ledger.KeyValue;
+import org.hyperledger.fabric.shim.ledger.QueryResultsIterator;
+
+/**
+ * Secondary index over the CUSTOMER table for the by-last-name selections of Payment and
+ * Order-Status [TPC-C 2.5.2.2 (5.2), 2.6.2.2 (3.2)].
+ *
+ * <p>Entries are keyed by (C_W_ID, C_D_ID, C_LAST, C_FIRST, C_ID) and only hold the C_ID, so a
+ * range read over (C_W_ID, C_D_ID, C_LAST) returns exactly the matching customers, already sorted
+ * by C_FIRST.
+ */
+@UtilityClass
+public final class CustomerLastNameIndex {
+
+  /** Object type of the index entries' composite keys. */
+  public static final String TYPE = "CUSTOMER_LAST_NAME";
+
+  /**
+   * Add the index entry of a customer.
+   *
+   * <p>Must be called whenever a customer is created, or when its C_LAST or C_FIRST changes (after
+   * {@link #remove(ChaincodeStub, Customer)}-ing the entry of the old version).
+   *
+   * @param stub The stub to write the entry through
+   * @param customer The customer to index
+   */
+  public static void add(final ChaincodeStub stub, final Customer customer) {
+    stub.putState(
+        keyOf(stub, customer), String.valueOf(customer.getC_id()).getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Remove the index entry of a customer.
+   *
+   * @param stub The stub to write the deletion through
+   * @param customer The customer whose entry to remove
+   */
+  public static void remove(final ChaincodeStub stub, final Customer customer) {
+    stub.delState(keyOf(stub, customer));
+  }
+
+  /**
+   * Look up the customers with a given last name in a district.
+   *
+   * @param stub The stub to read the index through
+   * @param c_w_id The C_W_ID of the customers
+   * @param c_d_id The C_D_ID of the customers
+   * @param c_last The C_LAST to match
+   * @return The C_IDs of the matching customers, sorted by C_FIRST in ascending order
+   */
+  public static List<Integer> lookup(
+      final ChaincodeStub stub, final int c_w_id, final int c_d_id, final String c_last) {
+    final CompositeKey partialKey =
+        stub.createCompositeKey(
+            TYPE, KeyEncoding.encode(c_w_id), KeyEncoding.encode(c_d_id), c_last);
+
+    final List<Integer> ids = new ArrayList<>();
+    try (QueryResultsIterator<KeyValue> entries = stub.getStateByPartialCompositeKey(partialKey)) {
+      for (final KeyValue entry : entries) {
+        ids.add(Integer.parseInt(entry.getStringValue()));
+      }
+    }
+    return ids;
+  }
+
+  private static String keyOf(final ChaincodeStub stub, final Customer customer) {
+    return stub.createCompositeKey(
+            TYPE,
+            KeyEncoding.encode(customer.getC_w_id()),
+            KeyEncoding.encode(customer.getC_d_id()),
+            customer.getC_last(),
+            customer.getC_first(),
+            KeyEncoding.encode(customer.getC_id()))
+        .toString();
+  }
+}
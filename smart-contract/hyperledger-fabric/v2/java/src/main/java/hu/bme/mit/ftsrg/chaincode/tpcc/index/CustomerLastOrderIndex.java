@@ -0,0 +1,69 @@
+/* SPDX-License-Identifier: Apache-2.0 */
+package hu.bme.mit.ftsrg.chaincode.tpcc.index;
+
+import hu.bme.mit.ftsrg.chaincode.tpcc.data.entity.Order;
+import hu.bme.mit.ftsrg.chaincode.tpcc.util.KeyEncoding;
+import java.nio.charset.StandardCharsets;
+import lombok.experimental.UtilityClass;
+import org.hyperledger.fabric.shim.ChaincodeStub;
+
+/**
+ * Per-customer pointer to the most recent ORDER of the customer, used by Order-Status [TPC-C
+ * 2.6.2.2 (4)].
+ *
+ * <p>Entries are keyed by (O_W_ID, O_D_ID, O_C_ID) and hold the O_ID of the latest order, so the
+ * last order of a customer can be resolved with a single point read no matter how many orders exist
+ * in the district.
+ */
+@UtilityClass
+public final class CustomerLastOrderIndex {
+
+  /** Object type of the index entries' composite keys. */
+  public static final String TYPE = "CUSTOMER_LAST_ORDER";
+
+  /**
+   * Record an order as the latest order of its customer.
+   *
+   * <p>This is a blind write: the pointer holds the last committed order of the customer, whatever
+   * its ID, and the order being placed is always the latest one of its customer (with sharded order
+   * numbers, its ID may even be lower than that of the customer's previous order).
+   *
+   * @param stub The stub to write the entry through
+   * @param order The newly placed order
+   */
+  public static void set(final ChaincodeStub stub, final Order order) {
+    stub.putState(
+        keyOf(stub, order.getO_w_id(), order.getO_d_id(), order.getO_c_id()),
+        String.valueOf(order.getO_id()).getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Get the O_ID of the latest order of a customer.
+   *
+   * @param stub The stub to read the entry through
+   * @param o_w_id The O_W_ID of the order
+   * @param o_d_id The O_D_ID of the order
+   * @param o_c_id The O_C_ID of the order
+   * @return The O_ID of the customer's latest order, or <code>null</code> if the customer has not
+   *     placed any orders yet
+   */
+  public static Integer get(
+      final ChaincodeStub stub, final int o_w_id, final int o_d_id, final int o_c_id) {
+    final byte[] value = stub.getState(keyOf(stub, o_w_id, o_d_id, o_c_id));
+    if (value == null || value.length == 0) {
+      return null;
+    }
+
+    return Integer.parseInt(new String(value, StandardCharsets.UTF_8));
+  }
+
+  private static String keyOf(
+      final ChaincodeStub stub, final int o_w_id, final int o_d_id, final int o_c_id) {
+    return stub.createCompositeKey(
+            TYPE,
+            KeyEncoding.encode(o_w_id),
+            KeyEncoding.encode(o_d_id),
+            KeyEncoding.encode(o_c_id))
+        .toString();
+  }
+}
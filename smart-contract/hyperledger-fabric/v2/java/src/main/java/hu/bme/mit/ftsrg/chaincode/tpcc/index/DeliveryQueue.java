@@ -0,0 +1,197 @@
+/* SPDX-License-Identifier: Apache-2.0 */
+package hu.bme.mit.ftsrg.chaincode.tpcc.index;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import hu.bme.mit.ftsrg.chaincode.tpcc.data.input.DeliveryInput;
+import hu.bme.mit.ftsrg.chaincode.tpcc.data.output.DeliveryOutput;
+import hu.bme.mit.ftsrg.chaincode.tpcc.util.Config;
+import hu.bme.mit.ftsrg.chaincode.tpcc.util.JSON;
+import hu.bme.mit.ftsrg.chaincode.tpcc.util.KeyEncoding;
+import hu.bme.mit.ftsrg.chaincode.tpcc.util.StateRanges;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import lombok.experimental.UtilityClass;
+import org.hyperledger.fabric.shim.ChaincodeStub;
+import org.hyperledger.fabric.shim.ledger.KeyValue;
+import org.hyperledger.fabric.shim.ledger.QueryResultsIterator;
+
+/**
+ * Per-district queue of deferred Delivery jobs, and their recorded results [TPC-C 2.7.2].
+ *
+ * <p>Delivery updates the oldest undelivered order of each of the ten districts of a warehouse, so
+ * its read/write set overlaps with almost every concurrent New-Order and Payment of the warehouse.
+ * The specification allows executing it in deferred mode instead, which is turned on by the setting
+ * <code>tpcc.delivery.deferred</code>: Delivery then only queues a job for each district, and
+ * separate per-district transactions later take the oldest job of their district, deliver one order
+ * and record the result, which can be queried by the ID of the queuing Delivery transaction.
+ *
+ * <p>Each district's jobs are numbered by a sequence: a tail pointer holds the number of the next
+ * job to queue, and a head pointer that of the next job to take, so both ends of the queue are
+ * point reads. Jobs are keyed by (W_ID, D_ID, sequence number), and results by (W_ID, Delivery
+ * transaction ID, D_ID). A range read would not do: the peer records a whole batch of range results
+ * in the read set (see {@link StateRanges}), which covers the end of a short queue, so every job
+ * queued concurrently would invalidate the transaction taking the oldest one.
+ *
+ * <p>Taking a job thus only conflicts with another taking a job of the same district, or with
+ * queuing into an empty queue (the job read as missing is written concurrently). Queuing reads and
+ * writes the tail pointers, so concurrent Deliveries of the same warehouse conflict with each
+ * other, but not with the transactions taking the jobs.
+ */
+@UtilityClass
+public final class DeliveryQueue {
+
+  /** Whether Delivery is executed in deferred mode (<code>tpcc.delivery.deferred</code>). */
+  public static final boolean ENABLED = Config.getBoolean("tpcc.delivery.deferred", false);
+
+  /** Object type of the queued jobs' composite keys. */
+  public static final String JOB_TYPE = "DELIVERY_JOB";
+
+  /** Object type of the next job to take's pointer's composite keys. */
+  public static final String HEAD_TYPE = "DELIVERY_JOB_HEAD";
+
+  /** Object type of the next job to queue's pointer's composite keys. */
+  public static final String TAIL_TYPE = "DELIVERY_JOB_TAIL";
+
+  /** Object type of the recorded results' composite keys. */
+  public static final String RESULT_TYPE = "DELIVERY_RESULT";
+
+  /** A queued delivery of a district. */
+  public static final class Job {
+
+    private final String id;
+    private final DeliveryInput input;
+
+    Job(final String id, final DeliveryInput input) {
+      this.id = id;
+      this.input = input;
+    }
+
+    /** The ID of the Delivery transaction that queued the job. */
+    public String getId() {
+      return this.id;
+    }
+
+    /** The input of the Delivery transaction that queued the job. */
+    public DeliveryInput getInput() {
+      return this.input;
+    }
+  }
+
+  /**
+   * Queue the delivery of a district by the current transaction.
+   *
+   * @param stub The stub to read the tail pointer and write the entries through
+   * @param input The input of the Delivery transaction
+   * @param d_id The district to deliver an order of
+   * @throws JsonProcessingException if the input cannot be serialized
+   */
+  public static void enqueue(final ChaincodeStub stub, final DeliveryInput input, final int d_id)
+      throws JsonProcessingException {
+    final String tailKey = pointerKeyOf(stub, TAIL_TYPE, input.getW_id(), d_id);
+    final int tail = pointerOf(stub, tailKey);
+
+    final Map<String, Object> job = new LinkedHashMap<>();
+    job.put("id", stub.getTxId());
+    job.put("input", input);
+    stub.putState(jobKeyOf(stub, input.getW_id(), d_id, tail), JSON.serializeToBytes(job));
+    stub.putState(tailKey, String.valueOf(tail + 1).getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Remove the oldest queued job of a district.
+   *
+   * @param stub The stub to read and write the entries through
+   * @param w_id The warehouse's ID
+   * @param d_id The district's ID
+   * @return The removed job, or <code>null</code> if the district's queue is empty
+   * @throws JsonProcessingException if the job cannot be deserialized
+   */
+  public static Job pollOldest(final ChaincodeStub stub, final int w_id, final int d_id)
+      throws JsonProcessingException {
+    final String headKey = pointerKeyOf(stub, HEAD_TYPE, w_id, d_id);
+    final int head = pointerOf(stub, headKey);
+    final String jobKey = jobKeyOf(stub, w_id, d_id, head);
+    final byte[] value = stub.getState(jobKey);
+    if (value == null || value.length == 0) {
+      return null;
+    }
+
+    stub.delState(jobKey);
+    stub.putState(headKey, String.valueOf(head + 1).getBytes(StandardCharsets.UTF_8));
+    final JsonNode job = JSON.deserialize(value, JsonNode.class);
+    return new Job(job.get("id").asText(), JSON.convert(job.get("input"), DeliveryInput.class));
+  }
+
+  /**
+   * Record the result of a deferred delivery of a district.
+   *
+   * @param stub The stub to write the entry through
+   * @param job The executed job
+   * @param d_id The district the job was executed for
+   * @param result The result of the district's delivery
+   * @throws JsonProcessingException if the result cannot be serialized
+   */
+  public static void recordResult(
+      final ChaincodeStub stub, final Job job, final int d_id, final DeliveryOutput result)
+      throws JsonProcessingException {
+    stub.putState(
+        stub.createCompositeKey(
+                RESULT_TYPE,
+                KeyEncoding.encode(job.getInput().getW_id()),
+                job.getId(),
+                KeyEncoding.encode(d_id))
+            .toString(),
+        JSON.serializeToBytes(result));
+  }
+
+  /**
+   * Get the recorded results of a deferred Delivery.
+   *
+   * @param stub The stub to read the entries through
+   * @param w_id The warehouse's ID
+   * @param jobId The ID of the Delivery transaction
+   * @return The results of the districts delivered so far, sorted by D_ID
+   * @throws JsonProcessingException if a result cannot be deserialized
+   */
+  public static List<DeliveryOutput> resultsOf(
+      final ChaincodeStub stub, final int w_id, final String jobId) throws JsonProcessingException {
+    final List<DeliveryOutput> results = new ArrayList<>();
+    try (QueryResultsIterator<KeyValue> entries =
+        stub.getStateByPartialCompositeKey(
+            stub.createCompositeKey(RESULT_TYPE, KeyEncoding.encode(w_id), jobId))) {
+      for (final KeyValue entry : entries) {
+        results.add(JSON.deserialize(entry.getValue(), DeliveryOutput.class));
+      }
+    }
+    return results;
+  }
+
+  private static int pointerOf(final ChaincodeStub stub, final String key) {
+    final byte[] value = stub.getState(key);
+    if (value == null || value.length == 0) {
+      return 0;
+    }
+
+    return Integer.parseInt(new String(value, StandardCharsets.UTF_8));
+  }
+
+  private static String pointerKeyOf(
+      final ChaincodeStub stub, final String type, final int w_id, final int d_id) {
+    return stub.createCompositeKey(type, KeyEncoding.encode(w_id), KeyEncoding.encode(d_id))
+        .toString();
+  }
+
+  private static String jobKeyOf(
+      final ChaincodeStub stub, final int w_id, final int d_id, final int sequence) {
+    return stub.createCompositeKey(
+            JOB_TYPE,
+            KeyEncoding.encode(w_id),
+            KeyEncoding.encode(d_id),
+            KeyEncoding.encode(sequence))
+        .toString();
+  }
+}
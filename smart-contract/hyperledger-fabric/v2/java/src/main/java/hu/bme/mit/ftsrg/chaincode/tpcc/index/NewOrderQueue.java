@@ -0,0 +1,93 @@
+/* SPDX-License-Identifier: Apache-2.0 */
+package hu.bme.mit.ftsrg.chaincode.tpcc.index;
+
+import hu.bme.mit.ftsrg.chaincode.tpcc.data.entity.NewOrder;
+import hu.bme.mit.ftsrg.chaincode.tpcc.util.KeyEncoding;
+import hu.bme.mit.ftsrg.chaincode.tpcc.util.StateRanges;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import lombok.experimental.UtilityClass;
+import org.hyperledger.fabric.shim.ChaincodeStub;
+import org.hyperledger.fabric.shim.ledger.KeyValue;
+
+/**
+ * Per-district queue of the undelivered orders in the NEW-ORDER table, used by Delivery [TPC-C
+ * 2.7.4.2 (3)].
+ *
+ * <p>Entries are keyed by (NO_W_ID, NO_D_ID, NO_O_ID) with the order ID zero-padded to a fixed
+ * width, so the lexical order of the keys within a district matches the numeric order of the order
+ * IDs and the oldest undelivered order is the first entry of the district's range.
+ *
+ * <p>If order numbers are allocated by the shards of {@link OrderIdAllocator}, a lower order number
+ * does not mean an older order, so the entries are keyed by (NO_W_ID, NO_D_ID, allocation time,
+ * NO_O_ID) instead, and the first entry is still the oldest order.
+ *
+ * <p>Taking the first entry records a whole batch of the district's range in the read set (see
+ * {@link StateRanges#first}), so while a district has fewer undelivered orders than a batch, a
+ * concurrent New-Order of the district invalidates Delivery.
+ */
+@UtilityClass
+public final class NewOrderQueue {
+
+  /** Object type of the queue entries' composite keys. */
+  public static final String TYPE = "NEW_ORDER_QUEUE";
+
+  /**
+   * Append a NEW-ORDER to the queue of its district.
+   *
+   * @param stub The stub to write the entry through
+   * @param newOrder The newly created NEW-ORDER
+   * @param allocated The time its order number was allocated, i.e., the timestamp of the New-Order
+   *     transaction (the initial population uses {@link Instant#EPOCH}, being older than any order)
+   */
+  public static void enqueue(
+      final ChaincodeStub stub, final NewOrder newOrder, final Instant allocated) {
+    stub.putState(
+        keyOf(stub, newOrder.getNo_w_id(), newOrder.getNo_d_id(), allocated, newOrder.getNo_o_id()),
+        String.valueOf(newOrder.getNo_o_id()).getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Remove the oldest undelivered order of a district from its queue.
+   *
+   * @param stub The stub to read the queue and write the deletion through
+   * @param w_id The warehouse's ID
+   * @param d_id The district's ID
+   * @return The NO_O_ID of the removed order, or <code>null</code> if the queue is empty
+   */
+  public static Integer pollOldest(final ChaincodeStub stub, final int w_id, final int d_id) {
+    final KeyValue first = first(stub, w_id, d_id);
+    if (first == null) {
+      return null;
+    }
+
+    stub.delState(first.getKey());
+    return Integer.parseInt(first.getStringValue());
+  }
+
+  private static KeyValue first(final ChaincodeStub stub, final int w_id, final int d_id) {
+    return StateRanges.first(
+        stub, stub.createCompositeKey(TYPE, KeyEncoding.encode(w_id), KeyEncoding.encode(d_id)));
+  }
+
+  private static String keyOf(
+      final ChaincodeStub stub,
+      final int w_id,
+      final int d_id,
+      final Instant allocated,
+      final int o_id) {
+    if (!OrderIdAllocator.SHARDED) {
+      return stub.createCompositeKey(
+              TYPE, KeyEncoding.encode(w_id), KeyEncoding.encode(d_id), KeyEncoding.encode(o_id))
+          .toString();
+    }
+
+    return stub.createCompositeKey(
+            TYPE,
+            KeyEncoding.encode(w_id),
+            KeyEncoding.encode(d_id),
+            KeyEncoding.encode(allocated),
+            KeyEncoding.encode(o_id))
+        .toString();
+  }
+}
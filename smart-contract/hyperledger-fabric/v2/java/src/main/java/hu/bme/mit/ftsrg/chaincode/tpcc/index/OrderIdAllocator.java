@@ -0,0 +1,171 @@
+/* SPDX-License-Identifier: Apache-2.0 */
+package hu.bme.mit.ftsrg.chaincode.tpcc.index;
+
+import hu.bme.mit.ftsrg.chaincode.tpcc.data.entity.District;
+import hu.bme.mit.ftsrg.chaincode.tpcc.util.Config;
+import hu.bme.mit.ftsrg.chaincode.tpcc.util.KeyEncoding;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import lombok.experimental.UtilityClass;
+import org.hyperledger.fabric.shim.ChaincodeStub;
+
+/**
+ * Sharded allocation of order numbers, an alternative to incrementing D_NEXT_O_ID [TPC-C 2.4.2.2
+ * (4)].
+ *
+ * <p>Incrementing D_NEXT_O_ID makes every New-Order of a district read and write the same key, so
+ * at most one of the concurrent New-Orders of a district can be valid in a block. When the number
+ * of shards (<code>tpcc.orderIds.shards</code>) is greater than 1, each district instead has that
+ * many independent sequences, and each New-Order draws from the one selected by its transaction ID.
+ * Shard <i>s</i> hands out the order numbers D_NEXT_O_ID + <i>k</i> * shards + <i>s</i> for
+ * <i>k</i> = 0, 1, ..., so the shards never collide, and D_NEXT_O_ID itself is left untouched (it
+ * becomes the first order number allocated by the shards). Only New-Orders that land in the same
+ * shard conflict.
+ *
+ * <p>Order numbers then still increase within a shard, but not across shards: a shard that has
+ * allocated fewer numbers hands out lower ones than the older orders of a busier shard. So the
+ * order of the allocations is recorded by the timestamps of the allocating transactions instead:
+ * the NEW-ORDER queue is keyed by them (see {@link NewOrderQueue}), so Delivery still delivers the
+ * oldest order first, and each shard keeps the timestamps of its last {@link #RECENT} allocations,
+ * so the most recent orders of a district can be selected by them (see {@link
+ * #recentOrderIds(ChaincodeStub, District, int)}). The setting must not be changed on a ledger that
+ * already has orders allocated by the shards.
+ */
+@UtilityClass
+public final class OrderIdAllocator {
+
+  /** The number of order number sequences per district (<code>tpcc.orderIds.shards</code>). */
+  public static final int SHARDS = Math.max(1, Config.getInt("tpcc.orderIds.shards", 1));
+
+  /** Whether order numbers are allocated by the shards instead of D_NEXT_O_ID. */
+  public static final boolean SHARDED = SHARDS > 1;
+
+  /** Object type of the shard counters' composite keys. */
+  public static final String TYPE = "ORDER_ID_SHARD";
+
+  /** The number of allocation timestamps kept per shard, i.e., of recent orders to select from. */
+  public static final int RECENT = 20;
+
+  /* Orders numbered below D_NEXT_O_ID are older than any allocated by the shards */
+  private static final String BEFORE_SHARDS = "";
+
+  /**
+   * Allocate an order number in the shard of the current transaction.
+   *
+   * @param stub The stub to read and write the shard counter through
+   * @param district The district to allocate the order number in
+   * @return The allocated order number
+   */
+  public static int allocate(final ChaincodeStub stub, final District district) {
+    final int shard = Math.floorMod(stub.getTxId().hashCode(), SHARDS);
+    final String key = keyOf(stub, district, shard);
+    final String[] counter = counterOf(stub, key);
+    final int allocated = Integer.parseInt(counter[0]);
+
+    /* The allocated count, then the allocation timestamps, most recent first */
+    final StringBuilder value =
+        new StringBuilder()
+            .append(allocated + 1)
+            .append(' ')
+            .append(KeyEncoding.encode(stub.getTxTimestamp()));
+    for (int i = 1; i < Math.min(counter.length, RECENT); ++i) {
+      value.append(' ').append(counter[i]);
+    }
+    stub.putState(key, value.toString().getBytes(StandardCharsets.UTF_8));
+    return orderIdOf(district, shard, allocated);
+  }
+
+  /**
+   * Get the order number {@link #allocate(ChaincodeStub, District)} would allocate in the shard of
+   * the current transaction, without allocating it.
+   *
+   * @param stub The stub to read the shard counter through
+   * @param district The district to allocate the order number in
+   * @return The next order number of the shard
+   */
+  public static int peek(final ChaincodeStub stub, final District district) {
+    final int shard = Math.floorMod(stub.getTxId().hashCode(), SHARDS);
+    return orderIdOf(
+        district, shard, Integer.parseInt(counterOf(stub, keyOf(stub, district, shard))[0]));
+  }
+
+  /**
+   * Get the numbers of the most recent orders of a district, i.e., the last allocated ones.
+   *
+   * <p>The orders numbered below D_NEXT_O_ID (e.g., those loaded initially) are included if the
+   * shards have not allocated enough orders yet.
+   *
+   * @param stub The stub to read the shard counters through
+   * @param district The district
+   * @param count The number of orders to return (at most {@link #RECENT})
+   * @return The (at most <code>count</code>) last allocated order numbers, oldest first
+   */
+  public static List<Integer> recentOrderIds(
+      final ChaincodeStub stub, final District district, final int count) {
+    if (count > RECENT) {
+      throw new IllegalArgumentException(
+          "Only the last %d orders of a shard are recorded, %d requested".formatted(RECENT, count));
+    }
+
+    /* The most recent orders overall are among the most recent ones of each shard */
+    final List<Candidate> candidates = new ArrayList<>();
+    for (int shard = 0; shard < SHARDS; ++shard) {
+      final String[] counter = counterOf(stub, keyOf(stub, district, shard));
+      final int allocated = Integer.parseInt(counter[0]);
+      for (int i = 1; i < Math.min(counter.length, count + 1); ++i) {
+        candidates.add(new Candidate(counter[i], orderIdOf(district, shard, allocated - i)));
+      }
+    }
+    for (int o_id = district.getD_next_o_id() - 1;
+        o_id >= Math.max(district.getD_next_o_id() - count, 0);
+        --o_id) {
+      candidates.add(new Candidate(BEFORE_SHARDS, o_id));
+    }
+
+    candidates.sort(Candidate.CHRONOLOGICAL.reversed());
+    return candidates.subList(0, Math.min(count, candidates.size())).stream()
+        .sorted(Candidate.CHRONOLOGICAL)
+        .map(candidate -> candidate.o_id)
+        .toList();
+  }
+
+  private static int orderIdOf(final District district, final int shard, final int k) {
+    return district.getD_next_o_id() + k * SHARDS + shard;
+  }
+
+  private static String[] counterOf(final ChaincodeStub stub, final String key) {
+    final byte[] value = stub.getState(key);
+    if (value == null || value.length == 0) {
+      return new String[] {"0"};
+    }
+
+    return new String(value, StandardCharsets.UTF_8).split(" ");
+  }
+
+  private static String keyOf(final ChaincodeStub stub, final District district, final int shard) {
+    return stub.createCompositeKey(
+            TYPE,
+            KeyEncoding.encode(district.getD_w_id()),
+            KeyEncoding.encode(district.getD_id()),
+            KeyEncoding.encode(shard))
+        .toString();
+  }
+
+  /* An order number and the encoded timestamp of its allocation */
+  private static final class Candidate {
+
+    static final Comparator<Candidate> CHRONOLOGICAL =
+        Comparator.comparing((Candidate candidate) -> candidate.allocated)
+            .thenComparingInt(candidate -> candidate.o_id);
+
+    private final String allocated;
+    private final int o_id;
+
+    Candidate(final String allocated, final int o_id) {
+      this.allocated = allocated;
+      this.o_id = o_id;
+    }
+  }
+}
@@ -0,0 +1,155 @@
+/* SPDX-License-Identifier: Apache-2.0 */
+package hu.bme.mit.ftsrg.chaincode.tpcc.index;
+
+import hu.bme.mit.ftsrg.chaincode.tpcc.data.entity.District;
+import hu.bme.mit.ftsrg.chaincode.tpcc.data.entity.Warehouse;
+import hu.bme.mit.ftsrg.chaincode.tpcc.util.Config;
+import hu.bme.mit.ftsrg.chaincode.tpcc.util.KeyEncoding;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.experimental.UtilityClass;
+import org.hyperledger.fabric.shim.ChaincodeStub;
+import org.hyperledger.fabric.shim.ledger.CompositeKey;
+import org.hyperledger.fabric.shim.ledger.KeyValue;
+import org.hyperledger.fabric.shim.ledger.QueryResultsIterator;
+
+/**
+ * Append-only log of the increments of W_YTD and D_YTD made by Payment [TPC-C 2.5.2.2 (3-4)].
+ *
+ * <p>Updating W_YTD in place makes every Payment of a warehouse read and write the same key, so at
+ * most one of the concurrent Payments of a warehouse can be valid in a block. With the log enabled
+ * (<code>tpcc.payment.ytdDeltas</code>), Payment instead blindly writes its increment under a key
+ * of its own, keyed by (W_ID[, D_ID], transaction ID); concurrent Payments then have disjoint write
+ * sets. The actual balance is the stored YTD plus the pending increments, which readers add up with
+ * {@link #pendingOf(ChaincodeStub, Warehouse)}, and a compaction transaction periodically folds
+ * them into the entities with {@link #compact(ChaincodeStub, Warehouse)}.
+ */
+@UtilityClass
+public final class YtdDeltaLog {
+
+  /** Whether Payment records YTD increments in the log (<code>tpcc.payment.ytdDeltas</code>). */
+  public static final boolean ENABLED = Config.getBoolean("tpcc.payment.ytdDeltas", false);
+
+  /** Object type of the warehouse increments' composite keys. */
+  public static final String WAREHOUSE_TYPE = "WAREHOUSE_YTD_DELTA";
+
+  /** Object type of the district increments' composite keys. */
+  public static final String DISTRICT_TYPE = "DISTRICT_YTD_DELTA";
+
+  /**
+   * Record an increment of W_YTD by the current transaction.
+   *
+   * @param stub The stub to write the entry through
+   * @param warehouse The warehouse to increment the YTD of
+   * @param amount The increment
+   */
+  public static void record(
+      final ChaincodeStub stub, final Warehouse warehouse, final double amount) {
+    append(
+        stub,
+        stub.createCompositeKey(
+            WAREHOUSE_TYPE, KeyEncoding.encode(warehouse.getW_id()), stub.getTxId()),
+        amount);
+  }
+
+  /**
+   * Record an increment of D_YTD by the current transaction.
+   *
+   * @param stub The stub to write the entry through
+   * @param district The district to increment the YTD of
+   * @param amount The increment
+   */
+  public static void record(
+      final ChaincodeStub stub, final District district, final double amount) {
+    append(
+        stub,
+        stub.createCompositeKey(
+            DISTRICT_TYPE,
+            KeyEncoding.encode(district.getD_w_id()),
+            KeyEncoding.encode(district.getD_id()),
+            stub.getTxId()),
+        amount);
+  }
+
+  /**
+   * Sum up the increments of W_YTD not yet folded into the warehouse.
+   *
+   * @param stub The stub to read the entries through
+   * @param warehouse The warehouse
+   * @return The sum of the pending increments
+   */
+  public static double pendingOf(final ChaincodeStub stub, final Warehouse warehouse) {
+    return sum(stub, partialKeyOf(stub, warehouse), false);
+  }
+
+  /**
+   * Sum up the increments of D_YTD not yet folded into the district.
+   *
+   * @param stub The stub to read the entries through
+   * @param district The district
+   * @return The sum of the pending increments
+   */
+  public static double pendingOf(final ChaincodeStub stub, final District district) {
+    return sum(stub, partialKeyOf(stub, district), false);
+  }
+
+  /**
+   * Remove the pending increments of W_YTD, to be added to the warehouse by the caller.
+   *
+   * @param stub The stub to read and delete the entries through
+   * @param warehouse The warehouse
+   * @return The sum of the removed increments
+   */
+  public static double compact(final ChaincodeStub stub, final Warehouse warehouse) {
+    return sum(stub, partialKeyOf(stub, warehouse), true);
+  }
+
+  /**
+   * Remove the pending increments of D_YTD, to be added to the district by the caller.
+   *
+   * @param stub The stub to read and delete the entries through
+   * @param district The district
+   * @return The sum of the removed increments
+   */
+  public static double compact(final ChaincodeStub stub, final District district) {
+    return sum(stub, partialKeyOf(stub, district), true);
+  }
+
+  /* The transaction ID makes the key unique, so this never conflicts with other Payments */
+  private static void append(
+      final ChaincodeStub stub, final CompositeKey key, final double amount) {
+    stub.putState(key.toString(), Double.toString(amount).getBytes(StandardCharsets.UTF_8));
+  }
+
+  /* Increments are summed in key order, so every peer computes the same (rounded) sum */
+  private static double sum(
+      final ChaincodeStub stub, final CompositeKey partialKey, final boolean remove) {
+    double sum = 0;
+    final List<String> keys = new ArrayList<>();
+    try (QueryResultsIterator<KeyValue> entries = stub.getStateByPartialCompositeKey(partialKey)) {
+      for (final KeyValue entry : entries) {
+        sum += Double.parseDouble(entry.getStringValue());
+        keys.add(entry.getKey());
+      }
+    }
+
+    if (remove) {
+      for (final String key : keys) {
+        stub.delState(key);
+      }
+    }
+    return sum;
+  }
+
+  private static CompositeKey partialKeyOf(final ChaincodeStub stub, final Warehouse warehouse) {
+    return stub.createCompositeKey(WAREHOUSE_TYPE, KeyEncoding.encode(warehouse.getW_id()));
+  }
+
+  private static CompositeKey partialKeyOf(final ChaincodeStub stub, final District district) {
+    return stub.createCompositeKey(
+        DISTRICT_TYPE,
+        KeyEncoding.encode(district.getD_w_id()),
+        KeyEncoding.encode(district.getD_id()));
+  }
+}
@@ -0,0 +1,187 @@
+/* SPDX-License-Identifier: Apache-2.0 */
+package hu.bme.mit.ftsrg.chaincode.tpcc.middleware;
+
+import hu.bme.mit.ftsrg.chaincode.tpcc.data.entity.HotColdSplit;
+import hu.bme.mit.ftsrg.hypernate.entity.SerializationException;
+import hu.bme.mit.ftsrg.hypernate.middleware.ChaincodeStubMiddlewareBase;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import org.hyperledger.fabric.shim.ChaincodeStub;
+import org.hyperledger.fabric.shim.ledger.CompositeKey;
+import org.hyperledger.fabric.shim.ledger.KeyValue;
+import org.hyperledger.fabric.shim.ledger.QueryResultsIterator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Stub middleware that stores the entities partitioned by {@link HotColdSplit} as separate hot and
+ * cold ledger entries, while the layers above it see whole values.
+ *
+ * <p>Reads join the two parts; writes split the value and only send the parts that differ from what
+ * was read, so an update of the hot fields leaves the (large) cold entry out of the write set.
+ * Deletions remove both parts.
+ *
+ * <p>The middleware changes the ledger layout, so it is not part of the configurable {@link
+ * StubPipeline}: when <code>tpcc.storage.hotCold</code> is on, it is the innermost layer of every
+ * transaction.
+ *
+ * @see ChaincodeStubMiddlewareBase
+ */
+public final class HotColdPartitionedStubMiddleware extends ChaincodeStubMiddlewareBase {
+
+  private static final Logger logger =
+      LoggerFactory.getLogger(HotColdPartitionedStubMiddleware.class);
+
+  /* The parts as read from the next layer; null values stand for entities stored as a whole */
+  private final Map<String, HotColdSplit.Parts> partsRead = new HashMap<>();
+
+  HotColdPartitionedStubMiddleware(final ChaincodeStub next) {
+    super(next);
+  }
+
+  @Override
+  public byte[] getState(final String key) {
+    final HotColdSplit split = splitOf(key);
+    if (split == null) {
+      return this.nextLayer.getState(key);
+    }
+
+    return join(split, key, this.nextLayer.getState(key));
+  }
+
+  @Override
+  public void putState(final String key, final byte[] value) {
+    final HotColdSplit split = splitOf(key);
+    if (split == null) {
+      this.nextLayer.putState(key, value);
+      return;
+    }
+
+    final HotColdSplit.Parts parts;
+    try {
+      parts = split.split(value);
+    } catch (SerializationException e) {
+      throw new IllegalStateException("Cannot split the value of key " + key, e);
+    }
+
+    final HotColdSplit.Parts read = this.partsRead.get(key);
+    if (read == null || !Arrays.equals(read.getHot(), parts.getHot())) {
+      this.nextLayer.putState(key, parts.getHot());
+    }
+    if (read == null || !Arrays.equals(read.getCold(), parts.getCold())) {
+      this.nextLayer.putState(coldKeyOf(key), parts.getCold());
+    } else {
+      logger.debug("Cold part of key={} is unchanged; not writing it", key);
+    }
+    this.partsRead.put(key, parts);
+  }
+
+  @Override
+  public void delState(final String key) {
+    this.nextLayer.delState(key);
+    if (splitOf(key) != null) {
+      this.nextLayer.delState(coldKeyOf(key));
+      this.partsRead.remove(key);
+    }
+  }
+
+  @Override
+  public QueryResultsIterator<KeyValue> getStateByRange(
+      final String startKey, final String endKey) {
+    return new JoiningResultsIterator(this.nextLayer.getStateByRange(startKey, endKey));
+  }
+
+  @Override
+  public QueryResultsIterator<KeyValue> getStateByPartialCompositeKey(final String compositeKey) {
+    return new JoiningResultsIterator(this.nextLayer.getStateByPartialCompositeKey(compositeKey));
+  }
+
+  @Override
+  public QueryResultsIterator<KeyValue> getStateByPartialCompositeKey(
+      final String objectType, final String... attributes) {
+    return new JoiningResultsIterator(
+        this.nextLayer.getStateByPartialCompositeKey(objectType, attributes));
+  }
+
+  @Override
+  public QueryResultsIterator<KeyValue> getStateByPartialCompositeKey(
+      final CompositeKey compositeKey) {
+    return new JoiningResultsIterator(this.nextLayer.getStateByPartialCompositeKey(compositeKey));
+  }
+
+  private byte[] join(final HotColdSplit split, final String key, final byte[] hot) {
+    if (hot == null || hot.length == 0) {
+      return hot;
+    }
+
+    final byte[] cold = this.nextLayer.getState(coldKeyOf(key));
+    if (cold == null || cold.length == 0) {
+      /* Stored as a whole, before partitioning was turned on */
+      this.partsRead.put(key, null);
+      return hot;
+    }
+
+    final HotColdSplit.Parts parts = new HotColdSplit.Parts(hot, cold);
+    this.partsRead.put(key, parts);
+    try {
+      return split.join(parts);
+    } catch (SerializationException e) {
+      throw new IllegalStateException("Cannot join the parts of key " + key, e);
+    }
+  }
+
+  /* Composite keys are NAMESPACE + objectType + DELIMITER + (attribute + DELIMITER)* */
+  private static HotColdSplit splitOf(final String key) {
+    if (!key.startsWith(CompositeKey.NAMESPACE)) {
+      return null;
+    }
+
+    final int typeEnd = key.indexOf(CompositeKey.NAMESPACE, 1);
+    return typeEnd < 0 ? null : HotColdSplit.ofType(key.substring(1, typeEnd));
+  }
+
+  private static String coldKeyOf(final String key) {
+    final int typeEnd = key.indexOf(CompositeKey.NAMESPACE, 1);
+    return key.substring(0, typeEnd) + HotColdSplit.COLD_SUFFIX + key.substring(typeEnd);
+  }
+
+  /** Joins the hot parts of partitioned entities returned by a range read with their cold parts. */
+  private final class JoiningResultsIterator implements QueryResultsIterator<KeyValue> {
+
+    private final QueryResultsIterator<KeyValue> fromNextLayer;
+
+    JoiningResultsIterator(final QueryResultsIterator<KeyValue> fromNextLayer) {
+      this.fromNextLayer = fromNextLayer;
+    }
+
+    @Override
+    public Iterator<KeyValue> iterator() {
+      final Iterator<KeyValue> it = this.fromNextLayer.iterator();
+      return new Iterator<>() {
+        @Override
+        public boolean hasNext() {
+          return it.hasNext();
+        }
+
+        @Override
+        public KeyValue next() {
+          final KeyValue entry = it.next();
+          final HotColdSplit split = splitOf(entry.getKey());
+          if (split == null) {
+            return entry;
+          }
+
+          return new WriteBackCachedChaincodeStubMiddleware.CachedKeyValue(
+              entry.getKey(), join(split, entry.getKey(), entry.getValue()));
+        }
+      };
+    }
+
+    @Override
+    public void close() {
+      this.fromNextLayer.close();
+    }
+  }
+}
@@ -0,0 +1,205 @@
+/* SPDX-License-Identifier: Apache-2.0 */
+package hu.bme.mit.ftsrg.chaincode.tpcc.middleware;
+
+import hu.bme.mit.ftsrg.chaincode.tpcc.data.entity.Item;
+import hu.bme.mit.ftsrg.chaincode.tpcc.util.Config;
+import hu.bme.mit.ftsrg.hypernate.middleware.ChaincodeStubMiddlewareBase;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import org.hyperledger.fabric.shim.ChaincodeStub;
+import org.hyperledger.fabric.shim.ledger.CompositeKey;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Stub middleware that serves reads of immutable tables from a cache shared by all transactions.
+ *
+ * <p>Tables that are never written after the initial load (by default, only ITEM) can be cached for
+ * the lifetime of the chaincode process, saving a peer round trip per read. The cache is bounded
+ * (least recently used entries are evicted first) and can optionally keep the values off-heap. Only
+ * existing entries are cached, so reads during the initial load still reach the ledger.
+ *
+ * <p>Cache hits are not recorded in the transaction's read set, and the cache belongs to the
+ * chaincode process of a single peer. A peer with a warm cache and one with a cold cache therefore
+ * produce different read sets for the same proposal, and a transaction endorsed by both is
+ * rejected. The middleware is thus only usable if every transaction using it is endorsed by a
+ * single peer. This has to be acknowledged with <code>tpcc.cache.immutable.singleEndorser</code>,
+ * without which creating the layer fails. Also, do not declare a table immutable if any transaction
+ * updates it.
+ *
+ * <p>The middleware is opt-in: add the <code>immutableCache</code> layer to the stub chain of the
+ * transactions that should use it (see {@link StubPipeline}). Configuration (see {@link Config}):
+ *
+ * <ul>
+ *   <li><code>tpcc.cache.immutable.singleEndorser</code>: acknowledges that the endorsement
+ *       policies require a single peer (default: off);
+ *   <li><code>tpcc.cache.immutable.types</code>: comma-separated object types of the immutable
+ *       tables (default: the type of {@link Item});
+ *   <li><code>tpcc.cache.immutable.capacity</code>: maximum number of cached entries (default:
+ *       100000, the cardinality of the ITEM table);
+ *   <li><code>tpcc.cache.immutable.offHeap</code>: whether to store the values in direct buffers
+ *       (default: off).
+ * </ul>
+ *
+ * @see ChaincodeStubMiddlewareBase
+ */
+public final class ImmutableTableCachedChaincodeStubMiddleware extends ChaincodeStubMiddlewareBase {
+
+  private static final Logger logger =
+      LoggerFactory.getLogger(ImmutableTableCachedChaincodeStubMiddleware.class);
+
+  private static final String[] keyPrefixes =
+      Arrays.stream(Config.getString("tpcc.cache.immutable.types", new Item().getType()).split(","))
+          .map(String::trim)
+          .filter(type -> !type.isEmpty())
+          .map(type -> new CompositeKey(type).toString())
+          .toArray(String[]::new);
+
+  private static final boolean singleEndorser =
+      Config.getBoolean("tpcc.cache.immutable.singleEndorser", false);
+
+  private static final boolean offHeap = Config.getBoolean("tpcc.cache.immutable.offHeap", false);
+
+  private static final Map<String, Object> cache =
+      new BoundedLruMap(Config.getInt("tpcc.cache.immutable.capacity", 100_000));
+
+  private static final LongAdder hits = new LongAdder();
+  private static final LongAdder misses = new LongAdder();
+
+  ImmutableTableCachedChaincodeStubMiddleware(final ChaincodeStub next) {
+    super(next);
+    if (!singleEndorser) {
+      throw new IllegalStateException(
+          "The immutableCache layer makes read sets differ between peers; it requires"
+              + " tpcc.cache.immutable.singleEndorser=true and single-peer endorsement policies");
+    }
+  }
+
+  @Override
+  public byte[] getState(final String key) {
+    if (!isImmutable(key)) {
+      return this.nextLayer.getState(key);
+    }
+
+    final Object cached;
+    synchronized (cache) {
+      cached = cache.get(key);
+    }
+    if (cached != null) {
+      hits.increment();
+      logger.debug("Immutable cache hit for key={}", key);
+      return unwrap(cached);
+    }
+
+    misses.increment();
+    logger.debug("Immutable cache miss for key={}; getting from next layer & caching", key);
+    final byte[] value = this.nextLayer.getState(key);
+    if (value != null && value.length > 0) {
+      final Object wrapped = wrap(value);
+      synchronized (cache) {
+        cache.put(key, wrapped);
+      }
+    }
+    return value;
+  }
+
+  @Override
+  public void putState(final String key, final byte[] value) {
+    evict(key);
+    this.nextLayer.putState(key, value);
+  }
+
+  @Override
+  public void delState(final String key) {
+    evict(key);
+    this.nextLayer.delState(key);
+  }
+
+  /**
+   * Get the number of reads served from the cache since the chaincode started.
+   *
+   * @return The number of cache hits
+   */
+  public static long getHits() {
+    return hits.sum();
+  }
+
+  /**
+   * Get the number of reads of immutable tables that had to go to the next layer since the
+   * chaincode started.
+   *
+   * @return The number of cache misses
+   */
+  public static long getMisses() {
+    return misses.sum();
+  }
+
+  /**
+   * Get the number of entries currently in the cache.
+   *
+   * @return The cache size
+   */
+  public static int getSize() {
+    synchronized (cache) {
+      return cache.size();
+    }
+  }
+
+  private static boolean isImmutable(final String key) {
+    for (final String prefix : keyPrefixes) {
+      if (key.startsWith(prefix)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /* Writes to immutable tables only happen during the initial load, but stay on the safe side. */
+  private static void evict(final String key) {
+    if (isImmutable(key)) {
+      synchronized (cache) {
+        cache.remove(key);
+      }
+    }
+  }
+
+  private static Object wrap(final byte[] value) {
+    if (!offHeap) {
+      return value.clone();
+    }
+
+    final ByteBuffer buffer = ByteBuffer.allocateDirect(value.length);
+    buffer.put(value).flip();
+    return buffer;
+  }
+
+  private static byte[] unwrap(final Object cached) {
+    if (cached instanceof ByteBuffer buffer) {
+      final byte[] value = new byte[buffer.remaining()];
+      buffer.duplicate().get(value);
+      return value;
+    }
+
+    return ((byte[]) cached).clone();
+  }
+
+  private static final class BoundedLruMap extends LinkedHashMap<String, Object> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int capacity;
+
+    BoundedLruMap(final int capacity) {
+      super(16, 0.75f, true);
+      this.capacity = capacity;
+    }
+
+    @Override
+    protected boolean removeEldestEntry(final Map.Entry<String, Object> eldest) {
+      return size() > this.capacity;
+    }
+  }
+}
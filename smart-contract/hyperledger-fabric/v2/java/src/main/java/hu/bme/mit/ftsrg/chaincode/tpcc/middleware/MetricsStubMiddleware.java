@@ -0,0 +1,123 @@
+/* SPDX-License-Identifier: Apache-2.0 */
+package hu.bme.mit.ftsrg.chaincode.tpcc.middleware;
+
+import hu.bme.mit.ftsrg.chaincode.tpcc.middleware.StubMetrics.Operation;
+import hu.bme.mit.ftsrg.hypernate.middleware.ChaincodeStubMiddlewareBase;
+import java.util.Iterator;
+import org.hyperledger.fabric.shim.ChaincodeStub;
+import org.hyperledger.fabric.shim.ledger.CompositeKey;
+import org.hyperledger.fabric.shim.ledger.KeyValue;
+import org.hyperledger.fabric.shim.ledger.QueryResultsIterator;
+
+/**
+ * Stub middleware that records the count, size and latency of the {@link ChaincodeStub#getState},
+ * {@link ChaincodeStub#putState}, {@link ChaincodeStub#delState} and range read calls into {@link
+ * StubMetrics}, under the profile of the current transaction.
+ *
+ * <p>The latency of a range read covers the call that starts it; the entries (and their bytes) are
+ * counted as they are consumed.
+ *
+ * @see ChaincodeStubMiddlewareBase
+ */
+public final class MetricsStubMiddleware extends ChaincodeStubMiddlewareBase {
+
+  private final StubMetrics.Profile profile;
+
+  MetricsStubMiddleware(final ChaincodeStub next, final StubMetrics.Profile profile) {
+    super(next);
+    this.profile = profile;
+  }
+
+  @Override
+  public byte[] getState(final String key) {
+    final long start = System.nanoTime();
+    final byte[] value = this.nextLayer.getState(key);
+    this.profile.record(
+        Operation.GET_STATE, System.nanoTime() - start, value == null ? 0 : value.length);
+    return value;
+  }
+
+  @Override
+  public void putState(final String key, final byte[] value) {
+    final long start = System.nanoTime();
+    this.nextLayer.putState(key, value);
+    this.profile.record(Operation.PUT_STATE, System.nanoTime() - start, value.length);
+  }
+
+  @Override
+  public void delState(final String key) {
+    final long start = System.nanoTime();
+    this.nextLayer.delState(key);
+    this.profile.record(Operation.DEL_STATE, System.nanoTime() - start, 0);
+  }
+
+  @Override
+  public QueryResultsIterator<KeyValue> getStateByRange(
+      final String startKey, final String endKey) {
+    final long start = System.nanoTime();
+    final QueryResultsIterator<KeyValue> results = this.nextLayer.getStateByRange(startKey, endKey);
+    this.profile.record(Operation.RANGE_SCAN, System.nanoTime() - start, 0);
+    return new CountingResultsIterator(results);
+  }
+
+  @Override
+  public QueryResultsIterator<KeyValue> getStateByPartialCompositeKey(final String compositeKey) {
+    final long start = System.nanoTime();
+    final QueryResultsIterator<KeyValue> results =
+        this.nextLayer.getStateByPartialCompositeKey(compositeKey);
+    this.profile.record(Operation.RANGE_SCAN, System.nanoTime() - start, 0);
+    return new CountingResultsIterator(results);
+  }
+
+  @Override
+  public QueryResultsIterator<KeyValue> getStateByPartialCompositeKey(
+      final String objectType, final String... attributes) {
+    final long start = System.nanoTime();
+    final QueryResultsIterator<KeyValue> results =
+        this.nextLayer.getStateByPartialCompositeKey(objectType, attributes);
+    this.profile.record(Operation.RANGE_SCAN, System.nanoTime() - start, 0);
+    return new CountingResultsIterator(results);
+  }
+
+  @Override
+  public QueryResultsIterator<KeyValue> getStateByPartialCompositeKey(
+      final CompositeKey compositeKey) {
+    final long start = System.nanoTime();
+    final QueryResultsIterator<KeyValue> results =
+        this.nextLayer.getStateByPartialCompositeKey(compositeKey);
+    this.profile.record(Operation.RANGE_SCAN, System.nanoTime() - start, 0);
+    return new CountingResultsIterator(results);
+  }
+
+  private final class CountingResultsIterator implements QueryResultsIterator<KeyValue> {
+
+    private final QueryResultsIterator<KeyValue> fromNextLayer;
+
+    CountingResultsIterator(final QueryResultsIterator<KeyValue> fromNextLayer) {
+      this.fromNextLayer = fromNextLayer;
+    }
+
+    @Override
+    public Iterator<KeyValue> iterator() {
+      final Iterator<KeyValue> it = this.fromNextLayer.iterator();
+      return new Iterator<>() {
+        @Override
+        public boolean hasNext() {
+          return it.hasNext();
+        }
+
+        @Override
+        public KeyValue next() {
+          final KeyValue entry = it.next();
+          profile.recordScanned(entry.getValue() == null ? 0 : entry.getValue().length);
+          return entry;
+        }
+      };
+    }
+
+    @Override
+    public void close() {
+      this.fromNextLayer.close();
+    }
+  }
+}
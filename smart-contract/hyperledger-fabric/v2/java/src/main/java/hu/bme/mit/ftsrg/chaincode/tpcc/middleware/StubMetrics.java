@@ -0,0 +1,145 @@
+/* SPDX-License-Identifier: Apache-2.0 */
+package hu.bme.mit.ftsrg.chaincode.tpcc.middleware;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process-wide statistics of the stub calls made by each transaction profile.
+ *
+ * <p>Recording is lock-free: counters are {@link LongAdder}s and latencies go into histograms with
+ * power-of-two buckets backed by an {@link AtomicLongArray}. The statistics are collected by {@link
+ * MetricsStubMiddleware} for the transactions whose stub chain includes the <code>metrics</code>
+ * layer (see {@link StubPipeline}).
+ */
+public final class StubMetrics {
+
+  /** The kinds of recorded operations. */
+  public enum Operation {
+    TRANSACTION,
+    GET_STATE,
+    PUT_STATE,
+    DEL_STATE,
+    RANGE_SCAN
+  }
+
+  private static final ConcurrentMap<String, Profile> profiles = new ConcurrentHashMap<>();
+
+  private StubMetrics() {}
+
+  /**
+   * Get the statistics of a transaction profile, creating them on first use.
+   *
+   * @param name The name of the profile (i.e., the invoked function)
+   * @return The statistics of the profile
+   */
+  static Profile profile(final String name) {
+    return profiles.computeIfAbsent(name, n -> new Profile());
+  }
+
+  /**
+   * Take a snapshot of the statistics of every transaction profile.
+   *
+   * @return The statistics keyed by profile and operation
+   */
+  public static Map<String, Map<String, Object>> snapshot() {
+    final Map<String, Map<String, Object>> result = new TreeMap<>();
+    profiles.forEach((name, profile) -> result.put(name, profile.snapshot()));
+    return result;
+  }
+
+  /** Statistics of a single transaction profile. */
+  static final class Profile {
+
+    private final Map<Operation, OperationStats> stats = new EnumMap<>(Operation.class);
+
+    private Profile() {
+      for (final Operation operation : Operation.values()) {
+        this.stats.put(operation, new OperationStats());
+      }
+    }
+
+    /**
+     * Record an operation.
+     *
+     * @param operation The kind of the operation
+     * @param nanos The duration of the operation
+     * @param bytes The number of bytes read or written by the operation
+     */
+    void record(final Operation operation, final long nanos, final long bytes) {
+      this.stats.get(operation).record(nanos, bytes);
+    }
+
+    /**
+     * Record the bytes (and entries) returned by a range scan as they are consumed.
+     *
+     * @param bytes The size of the returned value
+     */
+    void recordScanned(final long bytes) {
+      this.stats.get(Operation.RANGE_SCAN).recordEntry(bytes);
+    }
+
+    private Map<String, Object> snapshot() {
+      final Map<String, Object> result = new LinkedHashMap<>();
+      this.stats.forEach(
+          (operation, operationStats) -> {
+            if (operationStats.calls.sum() > 0) {
+              result.put(operation.name(), operationStats.snapshot());
+            }
+          });
+      return result;
+    }
+  }
+
+  private static final class OperationStats {
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder entries = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+
+    /* Bucket i counts durations in [2^(i-1), 2^i) ns; bucket 0 counts 0 ns */
+    private final AtomicLongArray latencyBuckets = new AtomicLongArray(Long.SIZE);
+
+    void record(final long nanos, final long bytes) {
+      this.calls.increment();
+      this.bytes.add(bytes);
+      this.totalNanos.add(nanos);
+      this.latencyBuckets.incrementAndGet(
+          Long.SIZE - Long.numberOfLeadingZeros(Math.max(nanos, 0)));
+    }
+
+    void recordEntry(final long bytes) {
+      this.entries.increment();
+      this.bytes.add(bytes);
+    }
+
+    Map<String, Object> snapshot() {
+      final Map<String, Object> result = new LinkedHashMap<>();
+      final long callCount = this.calls.sum();
+      result.put("calls", callCount);
+      result.put("bytes", this.bytes.sum());
+      if (this.entries.sum() > 0) {
+        result.put("entries", this.entries.sum());
+      }
+      result.put("totalNanos", this.totalNanos.sum());
+      result.put("meanNanos", callCount == 0 ? 0 : this.totalNanos.sum() / callCount);
+
+      final Map<String, Long> histogram = new LinkedHashMap<>();
+      for (int i = 0; i < this.latencyBuckets.length(); ++i) {
+        final long count = this.latencyBuckets.get(i);
+        if (count > 0) {
+          histogram.put("<" + (1L << i) + "ns", count);
+        }
+      }
+      result.put("latency", histogram);
+      return result;
+    }
+  }
+}
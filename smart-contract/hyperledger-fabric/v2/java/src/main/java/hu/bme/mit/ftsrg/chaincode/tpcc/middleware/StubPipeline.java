@@ -0,0 +1,93 @@
+/* SPDX-License-Identifier: Apache-2.0 */
+package hu.bme.mit.ftsrg.chaincode.tpcc.middleware;
+
+import hu.bme.mit.ftsrg.chaincode.tpcc.util.Config;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Configuration of the stub middleware chain of each transaction.
+ *
+ * <p>The chain of a transaction is read from the <code>tpcc.pipeline.&lt;transaction&gt;</code>
+ * setting (e.g., <code>tpcc.pipeline.newOrder</code>); <code>tpcc.pipeline.default</code> is used
+ * for transactions without their own setting. The value is a comma-separated list of layer names,
+ * outermost first; an empty list means that the transaction talks to the Fabric stub directly. The
+ * layers are:
+ *
+ * <ul>
+ *   <li><code>logging</code>: {@link LoggingStubMiddleware};
+ *   <li><code>writeBackCache</code>: {@link WriteBackCachedChaincodeStubMiddleware};
+ *   <li><code>updateThrottle</code>: {@link UpdateThrottledChaincodeStubMiddleware};
+ *   <li><code>immutableCache</code>: {@link ImmutableTableCachedChaincodeStubMiddleware};
+ *   <li><code>metrics</code>: {@link MetricsStubMiddleware}.
+ * </ul>
+ *
+ * <p><code>updateThrottle</code> holds back the writes of the transaction, but does not merge them
+ * into range reads, so it needs a <code>writeBackCache</code> layer above it, which does; chains
+ * without one are rejected.
+ *
+ * <p>The defaults are in the <code>tpcc.properties</code> resource; see {@link Config} for how to
+ * override them.
+ */
+final class StubPipeline {
+
+  static final String LOGGING = "logging";
+  static final String WRITE_BACK_CACHE = "writeBackCache";
+  static final String UPDATE_THROTTLE = "updateThrottle";
+  static final String IMMUTABLE_CACHE = "immutableCache";
+  static final String METRICS = "metrics";
+
+  /* Used if not even the default pipeline is configured, i.e., the original hard-wired chain */
+  private static final String FALLBACK = LOGGING + "," + WRITE_BACK_CACHE;
+
+  private static final Map<String, List<String>> layersByTransaction = new ConcurrentHashMap<>();
+
+  private StubPipeline() {}
+
+  /**
+   * Get the layers of the stub chain of a transaction.
+   *
+   * @param function The invoked function, optionally qualified with the contract name
+   * @return The layer names, outermost first
+   * @throws IllegalStateException if the configured chain has <code>updateThrottle</code> without
+   *     <code>writeBackCache</code> above it
+   */
+  static List<String> layersOf(final String function) {
+    return layersByTransaction.computeIfAbsent(transactionName(function), StubPipeline::resolve);
+  }
+
+  /**
+   * Get the transaction name from the invoked function.
+   *
+   * @param function The invoked function, optionally qualified with the contract name
+   * @return The unqualified transaction name
+   */
+  static String transactionName(final String function) {
+    if (function == null) {
+      return "<none>";
+    }
+
+    return function.substring(function.indexOf(':') + 1);
+  }
+
+  private static List<String> resolve(final String transaction) {
+    final String layers =
+        Config.getString(
+            "tpcc.pipeline." + transaction, Config.getString("tpcc.pipeline.default", FALLBACK));
+    final List<String> chain =
+        Arrays.stream(layers.split(","))
+            .map(String::trim)
+            .filter(layer -> !layer.isEmpty())
+            .toList();
+
+    final int throttle = chain.indexOf(UPDATE_THROTTLE);
+    if (throttle >= 0 && !chain.subList(0, throttle).contains(WRITE_BACK_CACHE)) {
+      throw new IllegalStateException(
+          "Pipeline of %s (%s): %s needs %s above it to merge its writes into range reads"
+              .formatted(transaction, layers, UPDATE_THROTTLE, WRITE_BACK_CACHE));
+    }
+    return chain;
+  }
+}
@@ -1,40 +1,92 @@
 /* SPDX-License-Identifier: Apache-2.0 */
 package hu.bme.mit.ftsrg.chaincode.tpcc.middleware;
 
+import hu.bme.mit.ftsrg.chaincode.tpcc.data.entity.HotColdSplit;
+import hu.bme.mit.ftsrg.chaincode.tpcc.util.EntityKeys;
+import hu.bme.mit.ftsrg.chaincode.tpcc.util.Trace;
 import hu.bme.mit.ftsrg.hypernate.context.ContextWithRegistry;
+import hu.bme.mit.ftsrg.hypernate.entity.Entity;
+import hu.bme.mit.ftsrg.hypernate.entity.SerializationException;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Deque;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 import org.hyperledger.fabric.shim.ChaincodeStub;
 
-/** Context specialized for the TPC-C chaincode implementation. */
-public class TPCCContext extends ContextWithRegistry {
+/**
+ * Context specialized for the TPC-C chaincode implementation.
+ *
+ * <p>The context measures the transaction from its creation until it is closed: contract methods
+ * close it when they return or throw, so that aborted transactions are traced and measured too.
+ */
+public class TPCCContext extends ContextWithRegistry implements AutoCloseable {
 
   private final Deque<ChaincodeStub> stubMiddlewares = new ArrayDeque<>();
 
   private final List<Runnable> finishHooks = new ArrayList<>();
 
+  private final List<Runnable> closeHooks = new ArrayList<>();
+
+  private final WriteBackCachedChaincodeStubMiddleware cachedMiddleware;
+
+  private final Trace.Span trace;
+
+  private boolean closed = false;
+
   public TPCCContext(final ChaincodeStub fabricStub) {
     super(fabricStub);
 
     /*
-     * Stub chain:
-     *   --> LOGGER --> WRITE BACK CACHE --> FABRIC STUB    ( --> ledger )
+     * Stub chain, as configured for the transaction (see StubPipeline), e.g.:
+     *   --> LOGGER --> WRITE BACK CACHE --> UPDATE THROTTLER --> FABRIC STUB    ( --> ledger )
+     * Hot/cold partitioning changes the ledger layout, so it is always innermost when enabled.
      */
+    final String function = fabricStub.getFunction();
+    this.trace =
+        Trace.begin(
+            StubPipeline.transactionName(function),
+            () -> String.join(",", fabricStub.getParameters()));
+    final List<String> layers = StubPipeline.layersOf(function);
     this.stubMiddlewares.push(fabricStub);
-    final WriteBackCachedChaincodeStubMiddleware cachedMiddleware =
-        new WriteBackCachedChaincodeStubMiddleware(this.stubMiddlewares.peek());
-    this.stubMiddlewares.push(cachedMiddleware);
-    this.stubMiddlewares.push(new LoggingStubMiddleware(this.stubMiddlewares.peek()));
-
-    this.finishHooks.add(
-        new Runnable() {
-          @Override
-          public void run() {
-            cachedMiddleware.dispose();
-          }
-        });
+    if (HotColdSplit.ENABLED) {
+      this.stubMiddlewares.push(new HotColdPartitionedStubMiddleware(fabricStub));
+    }
+    WriteBackCachedChaincodeStubMiddleware cached = null;
+    for (int i = layers.size() - 1; i >= 0; --i) {
+      final ChaincodeStub next = this.stubMiddlewares.peek();
+      switch (layers.get(i)) {
+        case StubPipeline.LOGGING -> this.stubMiddlewares.push(new LoggingStubMiddleware(next));
+        case StubPipeline.WRITE_BACK_CACHE -> {
+          final WriteBackCachedChaincodeStubMiddleware cachedMiddleware =
+              new WriteBackCachedChaincodeStubMiddleware(next);
+          this.stubMiddlewares.push(cachedMiddleware);
+          this.finishHooks.add(0, cachedMiddleware::dispose);
+          cached = cachedMiddleware;
+        }
+        case StubPipeline.UPDATE_THROTTLE -> {
+          final UpdateThrottledChaincodeStubMiddleware throttledMiddleware =
+              new UpdateThrottledChaincodeStubMiddleware(next);
+          this.stubMiddlewares.push(throttledMiddleware);
+          this.finishHooks.add(0, throttledMiddleware::flush);
+        }
+        case StubPipeline.IMMUTABLE_CACHE ->
+            this.stubMiddlewares.push(new ImmutableTableCachedChaincodeStubMiddleware(next));
+        case StubPipeline.METRICS -> {
+          final StubMetrics.Profile metrics =
+              StubMetrics.profile(StubPipeline.transactionName(function));
+          this.stubMiddlewares.push(new MetricsStubMiddleware(next, metrics));
+          final long start = System.nanoTime();
+          this.closeHooks.add(
+              () ->
+                  metrics.record(StubMetrics.Operation.TRANSACTION, System.nanoTime() - start, 0));
+        }
+        default -> throw new IllegalArgumentException("Unknown stub middleware: " + layers.get(i));
+      }
+    }
+    this.cachedMiddleware = cached;
   }
 
   @Override
@@ -42,6 +94,42 @@ public class TPCCContext extends ContextWithRegistry {
     return this.stubMiddlewares.peek();
   }
 
+  /**
+   * Read the given entities' ledger entries into the transaction's cache ahead of time.
+   *
+   * <p>Call this at the start of a transaction with every entity it is going to read, so that the
+   * subsequent {@link hu.bme.mit.ftsrg.hypernate.Registry Registry} reads are served locally. Does
+   * nothing if the transaction's stub chain has no write-back cache.
+   *
+   * @param entities The entities to prefetch (only their key parts need to be set)
+   */
+  public void prefetch(final Collection<? extends Entity> entities) {
+    if (this.cachedMiddleware == null) {
+      return;
+    }
+
+    final Set<String> keys = new LinkedHashSet<>();
+    for (final Entity entity : entities) {
+      keys.add(EntityKeys.keyOf(entity));
+    }
+    this.cachedMiddleware.prefetch(keys);
+  }
+
+  /**
+   * Write a new entity without checking whether it already exists.
+   *
+   * <p>Unlike {@link hu.bme.mit.ftsrg.hypernate.Registry#create(Entity) Registry#create}, this does
+   * not read the key first, which saves a round trip to the peer and keeps the key out of the read
+   * set. Only use it for entities whose key is unique by construction (e.g., the rows of a new
+   * order, keyed by a freshly allocated order number); an existing entity would be overwritten.
+   *
+   * @param entity The entity to write
+   * @throws SerializationException if the entity cannot be serialized
+   */
+  public void insert(final Entity entity) throws SerializationException {
+    this.getStub().putState(EntityKeys.keyOf(entity), entity.toBuffer());
+  }
+
   /**
    * Finalize the execution of a transaction.
    *
@@ -50,4 +138,22 @@ public class TPCCContext extends ContextWithRegistry {
   public void commit() {
     for (final Runnable hook : this.finishHooks) hook.run();
   }
+
+  /**
+   * End the measurement of the transaction: record its duration in the metrics (if the stub chain
+   * has the <code>metrics</code> layer) and close its trace span.
+   *
+   * <p>Unlike {@link #commit()}, this must also happen if the transaction fails, so call it from a
+   * <code>finally</code> block (or use the context as a resource). Closing it again does nothing.
+   */
+  @Override
+  public void close() {
+    if (this.closed) {
+      return;
+    }
+
+    this.closed = true;
+    for (final Runnable hook : this.closeHooks) hook.run();
+    this.trace.close();
+  }
 }
@@ -2,19 +2,158 @@
 package hu.bme.mit.ftsrg.chaincode.tpcc.middleware;
 
 import hu.bme.mit.ftsrg.hypernate.middleware.ChaincodeStubMiddlewareBase;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
 import org.hyperledger.fabric.shim.ChaincodeStub;
+import org.hyperledger.fabric.shim.ledger.CompositeKey;
+import org.hyperledger.fabric.shim.ledger.KeyValue;
+import org.hyperledger.fabric.shim.ledger.QueryResultsIterator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * Stub middleware that only sends {@link ChaincodeStub#putState(String, byte[])} calls once the
  * transaction is finished.
  *
+ * <p>The middleware remembers the value each key had when it was first read from the next layer.
+ * When flushed, writes that would leave a key with the value it was read with (and deletions of
+ * keys that were read as absent) are dropped; the remaining writes are sent in key order, so the
+ * write set does not depend on the order the transaction issued them in. Blind writes (of keys
+ * never read) are always sent.
+ *
+ * <p>Range reads are passed through without the pending writes, so they do not see the
+ * transaction's own writes; the middleware must therefore sit below a {@link
+ * WriteBackCachedChaincodeStubMiddleware}, which merges them (see {@link StubPipeline}).
+ *
  * @see ChaincodeStubMiddlewareBase
  */
 public final class UpdateThrottledChaincodeStubMiddleware extends ChaincodeStubMiddlewareBase {
 
+  private static final Logger logger =
+      LoggerFactory.getLogger(UpdateThrottledChaincodeStubMiddleware.class);
+
+  /* Stands for a pending deletion in pendingWrites */
+  private static final byte[] DELETED = new byte[0];
+
+  private final Map<String, byte[]> originalValues = new HashMap<>();
+
+  private final NavigableMap<String, byte[]> pendingWrites = new TreeMap<>();
+
   public UpdateThrottledChaincodeStubMiddleware(ChaincodeStub nextLayer) {
     super(nextLayer);
   }
 
-  /* TODO implement ? */
+  @Override
+  public byte[] getState(final String key) {
+    final byte[] pending = this.pendingWrites.get(key);
+    if (pending != null) {
+      return pending == DELETED ? null : pending;
+    }
+
+    final byte[] value = this.nextLayer.getState(key);
+    this.originalValues.putIfAbsent(key, value);
+    return value;
+  }
+
+  @Override
+  public void putState(final String key, final byte[] value) {
+    this.pendingWrites.put(key, value);
+  }
+
+  @Override
+  public void delState(final String key) {
+    this.pendingWrites.put(key, DELETED);
+  }
+
+  @Override
+  public QueryResultsIterator<KeyValue> getStateByRange(
+      final String startKey, final String endKey) {
+    return new RecordingResultsIterator(this.nextLayer.getStateByRange(startKey, endKey));
+  }
+
+  @Override
+  public QueryResultsIterator<KeyValue> getStateByPartialCompositeKey(final String compositeKey) {
+    return new RecordingResultsIterator(this.nextLayer.getStateByPartialCompositeKey(compositeKey));
+  }
+
+  @Override
+  public QueryResultsIterator<KeyValue> getStateByPartialCompositeKey(
+      final String objectType, final String... attributes) {
+    return new RecordingResultsIterator(
+        this.nextLayer.getStateByPartialCompositeKey(objectType, attributes));
+  }
+
+  @Override
+  public QueryResultsIterator<KeyValue> getStateByPartialCompositeKey(
+      final CompositeKey compositeKey) {
+    return new RecordingResultsIterator(this.nextLayer.getStateByPartialCompositeKey(compositeKey));
+  }
+
+  /** Send the pending writes that change the ledger to the next layer, in key order. */
+  public void flush() {
+    int elided = 0;
+    for (final Map.Entry<String, byte[]> write : this.pendingWrites.entrySet()) {
+      final String key = write.getKey();
+      final byte[] value = write.getValue();
+      final boolean read = this.originalValues.containsKey(key);
+      final byte[] original = this.originalValues.get(key);
+
+      if (value == DELETED) {
+        if (read && (original == null || original.length == 0)) {
+          ++elided;
+          continue;
+        }
+        this.nextLayer.delState(key);
+      } else {
+        if (read && Arrays.equals(original, value)) {
+          ++elided;
+          continue;
+        }
+        this.nextLayer.putState(key, value);
+      }
+    }
+
+    logger.debug(
+        "Flushed {} writes; elided {} writes that matched the values read",
+        this.pendingWrites.size() - elided,
+        elided);
+    this.pendingWrites.clear();
+  }
+
+  /** Passes results through, remembering them as the original values of their keys. */
+  private final class RecordingResultsIterator implements QueryResultsIterator<KeyValue> {
+
+    private final QueryResultsIterator<KeyValue> fromNextLayer;
+
+    RecordingResultsIterator(final QueryResultsIterator<KeyValue> fromNextLayer) {
+      this.fromNextLayer = fromNextLayer;
+    }
+
+    @Override
+    public Iterator<KeyValue> iterator() {
+      final Iterator<KeyValue> it = this.fromNextLayer.iterator();
+      return new Iterator<>() {
+        @Override
+        public boolean hasNext() {
+          return it.hasNext();
+        }
+
+        @Override
+        public KeyValue next() {
+          final KeyValue entry = it.next();
+          originalValues.putIfAbsent(entry.getKey(), entry.getValue());
+          return entry;
+        }
+      };
+    }
+
+    @Override
+    public void close() {
+      this.fromNextLayer.close();
+    }
+  }
 }
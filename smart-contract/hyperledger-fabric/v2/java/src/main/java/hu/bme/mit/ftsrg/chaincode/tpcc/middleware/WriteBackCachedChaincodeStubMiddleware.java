@@ -2,16 +2,34 @@
 package hu.bme.mit.ftsrg.chaincode.tpcc.middleware;
 
 import hu.bme.mit.ftsrg.hypernate.middleware.ChaincodeStubMiddlewareBase;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+import java.util.function.Predicate;
 import org.hyperledger.fabric.shim.ChaincodeStub;
+import org.hyperledger.fabric.shim.ledger.CompositeKey;
+import org.hyperledger.fabric.shim.ledger.KeyValue;
+import org.hyperledger.fabric.shim.ledger.QueryResultsIterator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * Stub middleware that caches reads in a local state.
  *
+ * <p>Range reads ({@link #getStateByRange(String, String)} and the <code>
+ * getStateByPartialCompositeKey</code> family) are merged with the pending writes of the
+ * transaction, so they see its own updates, creations and deletions. The values they return from
+ * the next layer are cached, so subsequent point reads of the scanned keys are served locally.
+ * Merging assumes that the next layer returns entries in the order of {@link String#compareTo},
+ * which holds for keys without supplementary characters.
+ *
  * @see ChaincodeStubMiddlewareBase
  */
 public final class WriteBackCachedChaincodeStubMiddleware extends ChaincodeStubMiddlewareBase {
@@ -19,7 +37,10 @@ public final class WriteBackCachedChaincodeStubMiddleware extends ChaincodeStubM
   private static final Logger logger =
       LoggerFactory.getLogger(WriteBackCachedChaincodeStubMiddleware.class);
 
-  private final Map<String, CachedItem> cache = new HashMap<>();
+  /* Simple keys cannot start with the composite key namespace (U+0000), so they sort above it */
+  private static final String FIRST_SIMPLE_KEY = "\u0001";
+
+  private final NavigableMap<String, CachedItem> cache = new TreeMap<>();
 
   WriteBackCachedChaincodeStubMiddleware(final ChaincodeStub next) {
     super(next);
@@ -47,6 +68,26 @@ public final class WriteBackCachedChaincodeStubMiddleware extends ChaincodeStubM
     return cached.getValue();
   }
 
+  /**
+   * Read a set of keys into the cache ahead of time.
+   *
+   * <p>Keys that are already cached are skipped, as are duplicates. The Fabric Java shim offers
+   * neither a multi-key read nor concurrent use of a transaction's stub, so the keys are fetched
+   * one by one; still, every read is issued up front and the later reads are served locally.
+   *
+   * @param keys The keys to fetch
+   */
+  public void prefetch(final Collection<String> keys) {
+    int fetched = 0;
+    for (final String key : keys) {
+      if (!cache.containsKey(key)) {
+        cache.put(key, new CachedItem(key, this.nextLayer.getState(key)));
+        ++fetched;
+      }
+    }
+    logger.debug("Prefetched {} of {} requested keys", fetched, keys.size());
+  }
+
   @Override
   public void putState(final String key, final byte[] value) {
     CachedItem cached = cache.get(key);
@@ -85,17 +126,96 @@ public final class WriteBackCachedChaincodeStubMiddleware extends ChaincodeStubM
     cached.delete();
   }
 
+  @Override
+  public QueryResultsIterator<KeyValue> getStateByRange(
+      final String startKey, final String endKey) {
+    final boolean unboundedStart = startKey == null || startKey.isEmpty();
+    final boolean unboundedEnd = endKey == null || endKey.isEmpty();
+    return merged(
+        this.nextLayer.getStateByRange(startKey, endKey),
+        unboundedStart ? FIRST_SIMPLE_KEY : startKey,
+        key -> unboundedEnd || key.compareTo(endKey) < 0);
+  }
+
+  @Override
+  public QueryResultsIterator<KeyValue> getStateByPartialCompositeKey(final String compositeKey) {
+    final String prefix =
+        compositeKey.startsWith(CompositeKey.NAMESPACE)
+            ? compositeKey
+            : new CompositeKey(compositeKey).toString();
+    return merged(
+        this.nextLayer.getStateByPartialCompositeKey(compositeKey),
+        prefix,
+        key -> key.startsWith(prefix));
+  }
+
+  @Override
+  public QueryResultsIterator<KeyValue> getStateByPartialCompositeKey(
+      final String objectType, final String... attributes) {
+    final String prefix = new CompositeKey(objectType, attributes).toString();
+    return merged(
+        this.nextLayer.getStateByPartialCompositeKey(objectType, attributes),
+        prefix,
+        key -> key.startsWith(prefix));
+  }
+
+  @Override
+  public QueryResultsIterator<KeyValue> getStateByPartialCompositeKey(
+      final CompositeKey compositeKey) {
+    final String prefix = compositeKey.toString();
+    return merged(
+        this.nextLayer.getStateByPartialCompositeKey(compositeKey),
+        prefix,
+        key -> key.startsWith(prefix));
+  }
+
+  /**
+   * Merge the results of a range read of the next layer with the pending writes in the range.
+   *
+   * <p>The pending writes are snapshotted when the read starts, so writes issued while iterating do
+   * not affect the results, just like on the ledger.
+   *
+   * @param fromNextLayer The results of the next layer
+   * @param from The lowest key of the range (inclusive)
+   * @param inRange Whether a key at or above <code>from</code> still belongs to the range; once it
+   *     returns <code>false</code>, no higher key is considered
+   * @return The merged results
+   */
+  private QueryResultsIterator<KeyValue> merged(
+      final QueryResultsIterator<KeyValue> fromNextLayer,
+      final String from,
+      final Predicate<String> inRange) {
+    final List<CachedItem> pendingWrites = new ArrayList<>();
+    for (final CachedItem item : cache.tailMap(from, true).values()) {
+      if (!inRange.test(item.getKey())) {
+        break;
+      }
+      if (item.isDirty()) {
+        pendingWrites.add(item.snapshot());
+      }
+    }
+
+    logger.debug(
+        "Merging range read starting at key={} with {} pending writes", from, pendingWrites.size());
+    return new MergedResultsIterator(fromNextLayer, pendingWrites);
+  }
+
+  private void cacheScanned(final KeyValue entry) {
+    cache.computeIfAbsent(entry.getKey(), key -> new CachedItem(key, entry.getValue()));
+  }
+
   public void dispose() {
     for (final Map.Entry<String, CachedItem> entry : cache.entrySet()) {
       final CachedItem item = entry.getValue();
 
-      if (item == null || !item.isDirty() || item.getValue() == null) {
+      if (item == null || !item.isDirty()) {
         continue;
       }
 
+      // Blind deletes have no value, so check for deletion first
       if (item.isToDelete()) {
         this.nextLayer.delState(item.getKey());
-      } else {
+      } else if (item.hasValue()) {
         this.nextLayer.putState(item.getKey(), item.getValue());
       }
     }
@@ -148,5 +268,124 @@ public final class WriteBackCachedChaincodeStubMiddleware extends ChaincodeStubM
     public boolean hasValue() {
       return this.value != null;
     }
+
+    CachedItem snapshot() {
+      final CachedItem copy = new CachedItem(this.key, this.value);
+      copy.toDelete = this.toDelete;
+      copy.dirty = this.dirty;
+      return copy;
+    }
+  }
+
+  static final class CachedKeyValue implements KeyValue {
+
+    private final String key;
+    private final byte[] value;
+
+    CachedKeyValue(final String key, final byte[] value) {
+      this.key = key;
+      this.value = value;
+    }
+
+    @Override
+    public String getKey() {
+      return this.key;
+    }
+
+    @Override
+    public byte[] getValue() {
+      return this.value;
+    }
+
+    @Override
+    public String getStringValue() {
+      return new String(this.value, StandardCharsets.UTF_8);
+    }
+  }
+
+  /** Lazily merges two key-ordered sequences; pending writes take precedence. */
+  private final class MergedResultsIterator implements QueryResultsIterator<KeyValue> {
+
+    private final QueryResultsIterator<KeyValue> fromNextLayer;
+    private final Iterator<KeyValue> nextLayerIt;
+    private final Iterator<CachedItem> pendingIt;
+
+    private KeyValue nextLayerHead;
+    private CachedItem pendingHead;
+    private KeyValue next;
+
+    MergedResultsIterator(
+        final QueryResultsIterator<KeyValue> fromNextLayer, final List<CachedItem> pendingWrites) {
+      this.fromNextLayer = fromNextLayer;
+      this.nextLayerIt = fromNextLayer.iterator();
+      this.pendingIt = pendingWrites.iterator();
+    }
+
+    @Override
+    public Iterator<KeyValue> iterator() {
+      return new Iterator<>() {
+        @Override
+        public boolean hasNext() {
+          return advance();
+        }
+
+        @Override
+        public KeyValue next() {
+          if (!advance()) {
+            throw new NoSuchElementException();
+          }
+          final KeyValue current = MergedResultsIterator.this.next;
+          MergedResultsIterator.this.next = null;
+          return current;
+        }
+      };
+    }
+
+    @Override
+    public void close() {
+      this.fromNextLayer.close();
+    }
+
+    private boolean advance() {
+      while (this.next == null) {
+        if (this.nextLayerHead == null && this.nextLayerIt.hasNext()) {
+          this.nextLayerHead = this.nextLayerIt.next();
+          cacheScanned(this.nextLayerHead);
+        }
+        if (this.pendingHead == null && this.pendingIt.hasNext()) {
+          this.pendingHead = this.pendingIt.next();
+        }
+
+        if (this.nextLayerHead == null && this.pendingHead == null) {
+          return false;
+        }
+
+        final int cmp;
+        if (this.pendingHead == null) {
+          cmp = -1;
+        } else if (this.nextLayerHead == null) {
+          cmp = 1;
+        } else {
+          cmp = this.nextLayerHead.getKey().compareTo(this.pendingHead.getKey());
+        }
+
+        if (cmp < 0) {
+          this.next = this.nextLayerHead;
+          this.nextLayerHead = null;
+          continue;
+        }
+
+        // The pending write shadows the entry of the next layer with the same key (if any)
+        if (cmp == 0) {
+          this.nextLayerHead = null;
+        }
+        final CachedItem write = this.pendingHead;
+        this.pendingHead = null;
+        if (!write.isToDelete() && write.hasValue()) {
+          this.next = new CachedKeyValue(write.getKey(), write.getValue());
+        }
+      }
+      return true;
+    }
   }
 }
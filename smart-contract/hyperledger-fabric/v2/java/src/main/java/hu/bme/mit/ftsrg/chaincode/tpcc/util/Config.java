@@ -0,0 +1,98 @@
+/* SPDX-License-Identifier: Apache-2.0 */
+package hu.bme.mit.ftsrg.chaincode.tpcc.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+import java.util.Properties;
+import lombok.experimental.UtilityClass;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Read-only access to the chaincode's configuration.
+ *
+ * <p>A setting named, e.g., <code>tpcc.codec</code> is looked up in the following order:
+ *
+ * <ol>
+ *   <li>the <code>TPCC_CODEC</code> environment variable (name upper-cased, dots and dashes
+ *       replaced with underscores);
+ *   <li>the <code>tpcc.codec</code> JVM system property;
+ *   <li>the <code>tpcc.codec</code> entry of the <code>tpcc.properties</code> file on the
+ *       classpath.
+ * </ol>
+ *
+ * <p><b>NOTE:</b> settings that influence what is written to the ledger MUST be the same on every
+ * endorsing peer, otherwise endorsements will not match.
+ */
+@UtilityClass
+public final class Config {
+
+  private static final Logger logger = LoggerFactory.getLogger(Config.class);
+
+  private static final String PROPERTIES_RESOURCE = "/tpcc.properties";
+
+  private static final Properties properties = loadProperties();
+
+  /**
+   * Get a string setting.
+   *
+   * @param name The name of the setting
+   * @param defaultValue The value to return if the setting is not set
+   * @return The value of the setting or <code>defaultValue</code>
+   */
+  public static String getString(final String name, final String defaultValue) {
+    final String env = System.getenv(toEnvironmentVariableName(name));
+    if (env != null) {
+      return env;
+    }
+
+    final String property = System.getProperty(name);
+    if (property != null) {
+      return property;
+    }
+
+    return properties.getProperty(name, defaultValue);
+  }
+
+  /**
+   * Get a boolean setting.
+   *
+   * @param name The name of the setting
+   * @param defaultValue The value to return if the setting is not set
+   * @return The value of the setting or <code>defaultValue</code>
+   */
+  public static boolean getBoolean(final String name, final boolean defaultValue) {
+    final String value = getString(name, null);
+    return value == null ? defaultValue : Boolean.parseBoolean(value.trim());
+  }
+
+  /**
+   * Get an integer setting.
+   *
+   * @param name The name of the setting
+   * @param defaultValue The value to return if the setting is not set
+   * @return The value of the setting or <code>defaultValue</code>
+   * @throws NumberFormatException if the setting is not a valid integer
+   */
+  public static int getInt(final String name, final int defaultValue) {
+    final String value = getString(name, null);
+    return value == null ? defaultValue : Integer.parseInt(value.trim());
+  }
+
+  private static String toEnvironmentVariableName(final String name) {
+    return name.toUpperCase(Locale.ROOT).replace('.', '_').replace('-', '_');
+  }
+
+  private static Properties loadProperties() {
+    final Properties props = new Properties();
+    try (InputStream in = Config.class.getResourceAsStream(PROPERTIES_RESOURCE)) {
+      if (in != null) {
+        props.load(in);
+      }
+    } catch (IOException e) {
+      logger.warn("Could not load {}; using defaults", PROPERTIES_RESOURCE, e);
+    }
+    return props;
+  }
+}
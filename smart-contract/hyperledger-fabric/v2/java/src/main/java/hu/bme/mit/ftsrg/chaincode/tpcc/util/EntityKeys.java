@@ -0,0 +1,21 @@
+/* SPDX-License-Identifier: Apache-2.0 */
+package hu.bme.mit.ftsrg.chaincode.tpcc.util;
+
+import hu.bme.mit.ftsrg.hypernate.entity.Entity;
+import lombok.experimental.UtilityClass;
+import org.hyperledger.fabric.shim.ledger.CompositeKey;
+
+/** Ledger keys of entities. */
+@UtilityClass
+public final class EntityKeys {
+
+  /**
+   * Get the ledger key of an entity, i.e., the composite key the registry stores it under.
+   *
+   * @param entity The entity (only its key parts need to be set)
+   * @return The entity's ledger key
+   */
+  public static String keyOf(final Entity entity) {
+    return new CompositeKey(entity.getType(), entity.getKeyParts()).toString();
+  }
+}
@@ -0,0 +1,85 @@
+/* SPDX-License-Identifier: Apache-2.0 */
+package hu.bme.mit.ftsrg.chaincode.tpcc.util;
+
+import java.time.Instant;
+import lombok.experimental.UtilityClass;
+
+/**
+ * Order-preserving encoding of the integer and timestamp parts of the index keys (see the <code>
+ * index</code> package), which are read by range.
+ *
+ * <p>Plain decimal strings do not sort numerically (<code>"10000" &lt; "9"</code>), so a range read
+ * over them returns entries in the wrong order. This encoding zero-pads non-negative values to ten
+ * digits, and maps negative values to a <code>-</code> prefix followed by their (ten-digit) offset
+ * from {@link Integer#MIN_VALUE}. The lexical order of the encoded strings thus matches the numeric
+ * order of the values over the whole <code>int</code> range.
+ *
+ * <p>Timestamps (e.g., transaction timestamps, also used by the HISTORY keys) are encoded as the
+ * nanoseconds since the epoch, zero-padded to 19 digits, so they sort chronologically as well.
+ */
+@UtilityClass
+public final class KeyEncoding {
+
+  private static final String ZEROS = "0000000000";
+
+  /**
+   * Encode an integer key part.
+   *
+   * @param value The value to encode
+   * @return The fixed-width, order-preserving encoding of <code>value</code>
+   */
+  public static String encode(final int value) {
+    if (value >= 0) {
+      return pad(Integer.toString(value));
+    }
+
+    return "-" + pad(Integer.toString(value - Integer.MIN_VALUE));
+  }
+
+  /**
+   * Decode an integer key part.
+   *
+   * @param encoded The encoded key part
+   * @return The decoded value
+   * @throws NumberFormatException if <code>encoded</code> is not a valid encoding
+   */
+  public static int decodeInt(final String encoded) {
+    if (encoded.length() == ZEROS.length() && isDigits(encoded, 0)) {
+      return Integer.parseInt(encoded);
+    }
+    if (encoded.length() == ZEROS.length() + 1
+        && encoded.charAt(0) == '-'
+        && isDigits(encoded, 1)) {
+      return Integer.parseInt(encoded.substring(1)) + Integer.MIN_VALUE;
+    }
+
+    throw new NumberFormatException("Not an encoded integer key part: " + encoded);
+  }
+
+  /**
+   * Encode a timestamp key part.
+   *
+   * @param timestamp The timestamp to encode (not before the epoch)
+   * @return The fixed-width, order-preserving encoding of <code>timestamp</code>
+   */
+  public static String encode(final Instant timestamp) {
+    return "%019d"
+        .formatted(
+            Math.addExact(
+                Math.multiplyExact(timestamp.getEpochSecond(), 1_000_000_000L),
+                timestamp.getNano()));
+  }
+
+  private static boolean isDigits(final String value, final int from) {
+    for (int i = from; i < value.length(); ++i) {
+      if (value.charAt(i) < '0' || value.charAt(i) > '9') {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static String pad(final String digits) {
+    return ZEROS.substring(digits.length()) + digits;
+  }
+}
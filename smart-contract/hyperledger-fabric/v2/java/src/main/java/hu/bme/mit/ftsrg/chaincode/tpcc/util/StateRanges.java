@@ -0,0 +1,34 @@
+/* SPDX-License-Identifier: Apache-2.0 */
+package hu.bme.mit.ftsrg.chaincode.tpcc.util;
+
+import java.util.Iterator;
+import lombok.experimental.UtilityClass;
+import org.hyperledger.fabric.shim.ChaincodeStub;
+import org.hyperledger.fabric.shim.ledger.CompositeKey;
+import org.hyperledger.fabric.shim.ledger.KeyValue;
+import org.hyperledger.fabric.shim.ledger.QueryResultsIterator;
+
+/** Convenience functions for range reads over the world state. */
+@UtilityClass
+public final class StateRanges {
+
+  /**
+   * Read the first entry (in key order) whose key starts with the given partial composite key.
+   *
+   * <p>The iterator is closed right after the first entry. The peer still fetches a whole batch of
+   * results (up to 100) before the chaincode sees the first one, and records the whole batch in the
+   * read set, so the range is re-validated at commit up to the end of the batch. Only ranges longer
+   * than one batch are thus cut short; for shorter ones, a concurrent write anywhere in the range
+   * invalidates the transaction just like a full range read.
+   *
+   * @param stub The stub to read through
+   * @param partialKey The partial composite key to match
+   * @return The first matching entry or <code>null</code> if there is none
+   */
+  public static KeyValue first(final ChaincodeStub stub, final CompositeKey partialKey) {
+    try (QueryResultsIterator<KeyValue> entries = stub.getStateByPartialCompositeKey(partialKey)) {
+      final Iterator<KeyValue> it = entries.iterator();
+      return it.hasNext() ? it.next() : null;
+    }
+  }
+}
@@ -0,0 +1,102 @@
+/* SPDX-License-Identifier: Apache-2.0 */
+package hu.bme.mit.ftsrg.chaincode.tpcc.util;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.function.Supplier;
+import lombok.experimental.UtilityClass;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Lightweight entry/exit tracing with wall-clock and CPU time measurement.
+ *
+ * <p>Tracing is off unless the <code>tpcc.trace</code> setting is on, and it can be switched at
+ * runtime with {@link #setEnabled(boolean)}. While it is off, {@link #begin(String, Supplier)} only
+ * reads a volatile flag and returns a shared no-op span; in particular, the details supplier is not
+ * called, so no strings are built.
+ *
+ * <p>Usage:
+ *
+ * <pre>{@code
+ * try (Trace.Span span = Trace.begin("newOrder", () -> parameters)) {
+ *   // ...
+ * }
+ * }</pre>
+ */
+@UtilityClass
+public final class Trace {
+
+  private static final Logger logger = LoggerFactory.getLogger(Trace.class);
+
+  private static final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+  private static volatile boolean enabled = Config.getBoolean("tpcc.trace", false);
+
+  private static final Span NOOP = new Span(null, 0, 0);
+
+  /**
+   * Check whether tracing is on.
+   *
+   * @return <code>true</code> if tracing is on
+   */
+  public static boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Switch tracing on or off for the whole chaincode process.
+   *
+   * @param on Whether tracing should be on
+   */
+  public static void setEnabled(final boolean on) {
+    enabled = on;
+    logger.info("Tracing switched {}", on ? "on" : "off");
+  }
+
+  /**
+   * Start a traced section.
+   *
+   * @param name The name of the section
+   * @param details Supplier of the details to log on entry (e.g., the parameters); only called if
+   *     tracing is on
+   * @return The span to close at the end of the section
+   */
+  public static Span begin(final String name, final Supplier<String> details) {
+    if (!enabled) {
+      return NOOP;
+    }
+
+    logger.info("START:{}({})", name, details.get());
+    return new Span(name, System.nanoTime(), cpuTime());
+  }
+
+  private static long cpuTime() {
+    return threads.isCurrentThreadCpuTimeSupported() ? threads.getCurrentThreadCpuTime() : -1;
+  }
+
+  /** A traced section; closing it logs the wall-clock and CPU time spent since its start. */
+  public static final class Span implements AutoCloseable {
+
+    private final String name;
+    private final long startNanos;
+    private final long startCpuNanos;
+
+    private Span(final String name, final long startNanos, final long startCpuNanos) {
+      this.name = name;
+      this.startNanos = startNanos;
+      this.startCpuNanos = startCpuNanos;
+    }
+
+    @Override
+    public void close() {
+      if (this.name == null) {
+        return;
+      }
+
+      final long wallNanos = System.nanoTime() - this.startNanos;
+      final long cpuMicros = this.startCpuNanos < 0 ? -1 : (cpuTime() - this.startCpuNanos) / 1000;
+      logger.info("END:{} wall={}us cpu={}us", this.name, wallNanos / 1000, cpuMicros);
+    }
+  }
+}
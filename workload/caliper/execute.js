@@ -77,13 +77,14 @@ module.exports.init = async (bc, contx, args, workerParameters, workerIndex, tot
     const scale = TPCC.ScaleParameters.makeWithScaleFactor(warehouses, scaleFactor);
 
     const clientNum = Number(args.clients || 10);
+    const newOrderRollbackRate = args.newOrderRollbackRate === undefined ? 1 : Number(args.newOrderRollbackRate);
 
     for (let i = 0; i < clientNum; i++) {
         const urand = new TPCC.UniformRandomGenerator();
         const nurConst = new TPCC.NonuniformRandomConstant(runParams.cLast, runParams.cId, runParams.orderLineItemId);
         const nurand = new TPCC.NonuniformRandomGenerator(nurConst, urand);
         const txGen = new TPCC.TransactionProfileGenerator(scale, urand, nurand,
-            (((workerIndex * clientNum) + i) % scale.warehouses) + 1, (((workerIndex * clientNum) + i) % scale.districtsPerWarehouse) + 1);
+            (((workerIndex * clientNum) + i) % scale.warehouses) + 1, (((workerIndex * clientNum) + i) % scale.districtsPerWarehouse) + 1, newOrderRollbackRate);
         const timingGen = new TPCC.WaitTimeGenerator(TPCC.WaitTimeSpecification.makeDefault(), urand);
 
         clientData.push({
@@ -23,13 +23,15 @@ class TransactionProfileGenerator {
      * @param {NonuniformRandomGenerator} nonuniformRandomGenerator
      * @param {number} homeWarehouseId The ID of the associated home warehouse
      * @param {number} stockLevelDistrictId The ID of the district associated with the Stock Level TX profile.
+     * @param {number} newOrderRollbackRate The percentage of New-Order TXs that reference an unused item (1 by the standard).
      */
-    constructor(scaleParameters, uniformRandomGenerator, nonuniformRandomGenerator, homeWarehouseId, stockLevelDistrictId) {
+    constructor(scaleParameters, uniformRandomGenerator, nonuniformRandomGenerator, homeWarehouseId, stockLevelDistrictId, newOrderRollbackRate = 1) {
         this._urand = uniformRandomGenerator;
         this._nurand = nonuniformRandomGenerator;
         this._scaleParameters = scaleParameters;
         this._homeWarehouseId = homeWarehouseId;
         this._stockLevelDistrictId = stockLevelDistrictId;
+        this._newOrderRollbackRate = newOrderRollbackRate;
     }
 
     /**
@@ -69,10 +71,10 @@ class TransactionProfileGenerator {
         let i_w_ids = [];
         let i_qtys = [];
 
-        let rollback = this._urand.number(1, 100) === 1;
+        let rollback = this._urand.number(1, 100) <= this._newOrderRollbackRate;
 
         for (let i = 0; i < ol_cnt; i++) {
-            // 1% chance of the last order line to reference a non-existing item
+            // 1% (by default) chance of the last order line to reference a non-existing item
             if (rollback && ((i + 1) === ol_cnt)) {
                 i_ids.push(this._scaleParameters.items + 1);
                 faulty = true;